@@ -0,0 +1,78 @@
+package org.wonder.wonderdrugs.analytics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.dto.StudyAnalyticsDTO;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySnapshotUpdatedEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 研究站点统计
+ * 研究第一次被查询时从快照构建统计，此后随快照更新增量调整：增量同步直接应用事件携带的变化，
+ * 全量刷新逐个比较站点只调整变化的部分。读取时返回缓存的统计结果，与站点数量无关
+ */
+@Slf4j
+@Service
+public class SiteAnalyticsService {
+
+    private final ConcurrentMap<String, StudyAggregates> aggregates = new ConcurrentHashMap<>();
+
+    public StudyAnalyticsDTO getAnalytics(StudySnapshot snapshot) {
+        if (!snapshot.isLoaded()) {
+            // 未加载的研究（如未知研究ID）不登记统计
+            return build(snapshot).view();
+        }
+        StudyAggregates current = aggregates.get(snapshot.getStudyId());
+        if (current == null || current.getVersion() < snapshot.getVersion()) {
+            current = aggregates.compute(snapshot.getStudyId(), (id, existing) ->
+                    existing != null && existing.getVersion() >= snapshot.getVersion()
+                            ? existing
+                            : build(snapshot));
+        }
+        synchronized (current) {
+            return current.view();
+        }
+    }
+
+    @EventListener
+    public void onSnapshotUpdated(StudySnapshotUpdatedEvent event) {
+        StudySnapshot snapshot = event.getSnapshot();
+        StudyAggregates current = aggregates.get(snapshot.getStudyId());
+        // 从未查询过的研究不维护统计
+        if (current == null) {
+            return;
+        }
+        synchronized (current) {
+            long start = System.currentTimeMillis();
+            if (current.getVersion() >= snapshot.getVersion()) {
+                return;
+            }
+            StudySnapshot previous = event.getPrevious();
+            if (event.hasDelta() && previous.getVersion() == current.getVersion()) {
+                current.apply(snapshot.getVersion(), event.getUpsertedSites(), event.getRemovedSiteIds());
+            } else {
+                current.applyAll(snapshot.getVersion(), snapshot.getSites());
+            }
+            log.debug("Updated analytics for study {} to v{} in {} ms", snapshot.getStudyId(),
+                    snapshot.getVersion(), System.currentTimeMillis() - start);
+        }
+    }
+
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        aggregates.remove(event.getStudyId());
+    }
+
+    private static StudyAggregates build(StudySnapshot snapshot) {
+        long start = System.currentTimeMillis();
+        StudyAggregates built = new StudyAggregates(snapshot.getStudyId(), snapshot.getVersion(), snapshot.getSites());
+        log.debug("Built analytics for study {} v{} ({} sites) in {} ms", snapshot.getStudyId(),
+                snapshot.getVersion(), snapshot.getSites().size(), System.currentTimeMillis() - start);
+        return built;
+    }
+}
@@ -0,0 +1,219 @@
+package org.wonder.wonderdrugs.analytics;
+
+import org.wonder.wonderdrugs.dto.CountryAnalyticsDTO;
+import org.wonder.wonderdrugs.dto.GreenlightSummaryDTO;
+import org.wonder.wonderdrugs.dto.StudyAnalyticsDTO;
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.*;
+
+/**
+ * 单个研究的站点统计，随站点的新增、修改、删除增量维护
+ * 每个站点的贡献在加入时累加、移除时扣减，统计量与站点总数无关；
+ * 启动天数保存为 值→次数 的有序表，最小、最大、中位数只需遍历不同取值
+ * 非线程安全，由 SiteAnalyticsService 加锁访问
+ */
+final class StudyAggregates {
+    private static final String UNKNOWN = "未知";
+
+    private final String studyId;
+    private final Map<String, Site> sites = new HashMap<>();
+    private final Map<String, Integer> bySiteStatus = new HashMap<>();
+    private final Map<String, Integer> byStatus = new HashMap<>();
+    private final Map<String, CountryCounts> byCountry = new HashMap<>();
+    private final TreeMap<Integer, Integer> days = new TreeMap<>();
+    private long daysSum;
+    private int daysCount;
+    private long version;
+    // 统计变化后第一次读取时生成
+    private StudyAnalyticsDTO view;
+
+    StudyAggregates(String studyId, long version, List<Site> sites) {
+        this.studyId = studyId;
+        this.version = version;
+        for (Site site : sites) {
+            add(site);
+        }
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * 应用增量同步的变化
+     */
+    void apply(long newVersion, List<Site> upserted, List<String> removedIds) {
+        for (Site site : upserted) {
+            replace(sites.get(site.getId()), site);
+        }
+        for (String id : removedIds) {
+            replace(sites.get(id), null);
+        }
+        version = newVersion;
+        view = null;
+    }
+
+    /**
+     * 与全量刷新后的站点逐个比较，只调整发生变化的站点的贡献
+     */
+    void applyAll(long newVersion, List<Site> current) {
+        Set<String> seen = new HashSet<>(current.size() * 2);
+        for (Site site : current) {
+            seen.add(site.getId());
+            Site old = sites.get(site.getId());
+            if (old != site && !Objects.equals(old, site)) {
+                replace(old, site);
+            }
+        }
+        if (seen.size() < sites.size()) {
+            List<Site> removed = new ArrayList<>();
+            for (Site site : sites.values()) {
+                if (!seen.contains(site.getId())) {
+                    removed.add(site);
+                }
+            }
+            removed.forEach(site -> replace(site, null));
+        }
+        version = newVersion;
+        view = null;
+    }
+
+    StudyAnalyticsDTO view() {
+        if (view == null) {
+            view = buildView();
+        }
+        return view;
+    }
+
+    private void replace(Site old, Site site) {
+        if (old != null) {
+            remove(old);
+        }
+        if (site != null) {
+            add(site);
+        }
+    }
+
+    private void add(Site site) {
+        sites.put(site.getId(), site);
+        count(bySiteStatus, label(site.getSiteStatus()), 1);
+        count(byStatus, label(site.getStatus()), 1);
+        byCountry.computeIfAbsent(label(site.getCountryId()), id -> new CountryCounts()).add(site);
+        if (site.getDaysToGreenlight() != null) {
+            days.merge(site.getDaysToGreenlight(), 1, Integer::sum);
+            daysSum += site.getDaysToGreenlight();
+            daysCount++;
+        }
+    }
+
+    private void remove(Site site) {
+        sites.remove(site.getId());
+        count(bySiteStatus, label(site.getSiteStatus()), -1);
+        count(byStatus, label(site.getStatus()), -1);
+        String countryId = label(site.getCountryId());
+        CountryCounts country = byCountry.get(countryId);
+        if (country != null && country.remove(site)) {
+            byCountry.remove(countryId);
+        }
+        if (site.getDaysToGreenlight() != null) {
+            count(days, site.getDaysToGreenlight(), -1);
+            daysSum -= site.getDaysToGreenlight();
+            daysCount--;
+        }
+    }
+
+    private StudyAnalyticsDTO buildView() {
+        List<CountryAnalyticsDTO> countries = new ArrayList<>(byCountry.size());
+        byCountry.forEach((countryId, counts) -> countries.add(CountryAnalyticsDTO.builder()
+                .countryId(countryId)
+                .country(counts.name)
+                .countryCode(counts.code)
+                .siteCount(counts.total)
+                .bySiteStatus(new TreeMap<>(counts.bySiteStatus))
+                .build()));
+        countries.sort(Comparator.comparingInt(CountryAnalyticsDTO::getSiteCount).reversed()
+                .thenComparing(CountryAnalyticsDTO::getCountryId));
+
+        return StudyAnalyticsDTO.builder()
+                .studyId(studyId)
+                .siteCount(sites.size())
+                .bySiteStatus(new TreeMap<>(bySiteStatus))
+                .byStatus(new TreeMap<>(byStatus))
+                .byCountry(countries)
+                .daysToGreenlight(greenlightSummary())
+                .build();
+    }
+
+    private GreenlightSummaryDTO greenlightSummary() {
+        // 分段与 SiteHealthScorer 的启动天数阈值一致
+        Map<String, Integer> buckets = new LinkedHashMap<>();
+        buckets.put("≤30", sum(days.headMap(30, true)));
+        buckets.put("31-60", sum(days.subMap(30, false, 60, true)));
+        buckets.put("61-90", sum(days.subMap(60, false, 90, true)));
+        buckets.put(">90", sum(days.tailMap(90, false)));
+
+        GreenlightSummaryDTO.GreenlightSummaryDTOBuilder summary = GreenlightSummaryDTO.builder()
+                .count(daysCount)
+                .missing(sites.size() - daysCount)
+                .buckets(buckets);
+        if (daysCount > 0) {
+            summary.min(days.firstKey())
+                    .max(days.lastKey())
+                    .mean((double) daysSum / daysCount)
+                    .median(median());
+        }
+        return summary.build();
+    }
+
+    private int median() {
+        int target = (daysCount - 1) / 2;
+        int seen = 0;
+        for (Map.Entry<Integer, Integer> entry : days.entrySet()) {
+            seen += entry.getValue();
+            if (seen > target) {
+                return entry.getKey();
+            }
+        }
+        return days.lastKey();
+    }
+
+    private static int sum(Map<Integer, Integer> counts) {
+        int total = 0;
+        for (int count : counts.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static <K> void count(Map<K, Integer> counts, K key, int delta) {
+        counts.merge(key, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private static String label(String value) {
+        return value != null ? value : UNKNOWN;
+    }
+
+    private static final class CountryCounts {
+        private final Map<String, Integer> bySiteStatus = new HashMap<>();
+        private String name;
+        private String code;
+        private int total;
+
+        private void add(Site site) {
+            name = site.getCountry();
+            code = site.getCountryCode();
+            total++;
+            count(bySiteStatus, label(site.getSiteStatus()), 1);
+        }
+
+        /**
+         * @return 国家下是否已没有站点
+         */
+        private boolean remove(Site site) {
+            total--;
+            count(bySiteStatus, label(site.getSiteStatus()), -1);
+            return total == 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.wonder.wonderdrugs.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 64 位内容指纹，用于生成 ETag
+ * 基于元素自身的 equals/hashCode（模型类由 Lombok 生成），内容相同的集合在任何节点上得到相同的值
+ */
+public final class ContentHash {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private ContentHash() {
+    }
+
+    public static long of(Collection<?> values) {
+        long hash = SEED ^ values.size();
+        for (Object value : values) {
+            hash = mix(hash, value == null ? 0 : value.hashCode());
+        }
+        return hash;
+    }
+
+    /**
+     * 与迭代顺序无关的映射指纹
+     */
+    public static long of(Map<?, ?> values) {
+        long hash = SEED ^ values.size();
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            hash += finish(mix(entry.getKey().hashCode(), entry.getValue() == null ? 0 : entry.getValue().hashCode()));
+        }
+        return hash;
+    }
+
+    /**
+     * 在已有指纹上累加一段文本（FNV-1a 64 位），用于把请求参数并入内容指纹
+     */
+    public static long of(long seed, CharSequence text) {
+        long hash = seed ^ 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return finish(hash);
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001B3L + Long.rotateLeft(hash, 29);
+    }
+
+    private static long finish(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,29 @@
+package org.wonder.wonderdrugs.cache;
+
+/**
+ * 已序列化的响应体及其 gzip 压缩版本
+ */
+public final class EncodedBody {
+    private final byte[] identity;
+    private final byte[] gzip;
+
+    EncodedBody(byte[] identity, byte[] gzip) {
+        this.identity = identity;
+        this.gzip = gzip;
+    }
+
+    public byte[] getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return gzip 压缩后的字节；响应体太小或压缩无收益时为 null
+     */
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    public boolean hasGzip() {
+        return gzip != null;
+    }
+}
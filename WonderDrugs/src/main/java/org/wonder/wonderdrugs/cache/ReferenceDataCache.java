@@ -0,0 +1,139 @@
+package org.wonder.wonderdrugs.cache;
+
+import org.wonder.wonderdrugs.dto.CacheStatsDTO;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 有界的参考数据缓存
+ * 按访问顺序进行 LRU 淘汰，并对每个条目施加 TTL；统计命中、未命中、容量淘汰和过期次数
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+public class ReferenceDataCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public ReferenceDataCache(String name, int maxSize, Duration ttl) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ReferenceDataCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 获取未过期的缓存值
+     * @return 缓存值，不存在或已过期时返回 null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis(), ttlMillis)) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * 批量获取未过期的缓存值，未命中的键不会出现在结果中
+     */
+    public synchronized Map<K, V> getAll(Collection<K> keys) {
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    public synchronized void putAll(Map<K, V> values) {
+        long now = System.currentTimeMillis();
+        values.forEach((key, value) -> entries.put(key, new Entry<>(value, now)));
+    }
+
+    /**
+     * 返回写入时间早于指定时长的键，用于在过期前提前刷新
+     */
+    public synchronized Set<K> keysOlderThan(Duration age) {
+        long threshold = System.currentTimeMillis() - age.toMillis();
+        Set<K> keys = new HashSet<>();
+        entries.forEach((key, entry) -> {
+            if (entry.loadedAt <= threshold) {
+                keys.add(key);
+            }
+        });
+        return keys;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized CacheStatsDTO stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        return CacheStatsDTO.builder()
+                .name(name)
+                .size(entries.size())
+                .maxSize(maxSize)
+                .hits(hitCount)
+                .misses(missCount)
+                .evictions(evictions.get())
+                .expirations(expirations.get())
+                .hitRate(total == 0 ? 0.0 : (double) hitCount / total)
+                .build();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean isExpired(long now, long ttlMillis) {
+            return now - loadedAt > ttlMillis;
+        }
+    }
+}
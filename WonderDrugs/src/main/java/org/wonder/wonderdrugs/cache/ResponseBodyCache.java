@@ -0,0 +1,108 @@
+package org.wonder.wonderdrugs.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.wonder.wonderdrugs.dto.CacheStatsDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 热点接口的最终响应体缓存
+ * 以内容指纹加请求参数原文为键保存 JSON 字节和 gzip 字节：数据变化后自然换用新键，
+ * 旧条目随 LRU 淘汰。同一响应体的并发首次请求只序列化和压缩一次
+ */
+@Slf4j
+@Component
+public class ResponseBodyCache {
+
+    private final ObjectMapper objectMapper;
+    private final int minCompressSize;
+    private final ReferenceDataCache<String, EncodedBody> bodies;
+    private final SingleFlight<String, EncodedBody> encodeFlights = new SingleFlight<>("response-encode");
+
+    @Autowired
+    public ResponseBodyCache(ObjectMapper objectMapper,
+                             @Value("${response-cache.max-entries:64}") int maxEntries,
+                             @Value("${response-cache.ttl:PT1H}") Duration ttl,
+                             @Value("${response-cache.min-compress-size:1024}") int minCompressSize) {
+        this.objectMapper = objectMapper;
+        this.minCompressSize = minCompressSize;
+        this.bodies = new ReferenceDataCache<>("response-body", maxEntries, ttl);
+    }
+
+    /**
+     * @param key 唯一标识响应内容的键，须包含请求参数原文；参数的哈希可能冲突，不能作为键
+     * @param body 未命中时构建响应对象
+     */
+    public EncodedBody get(String key, Supplier<?> body) {
+        return load(key, () -> encode(body.get()));
+    }
+
+    /**
+     * 缓存已经编码好的非 JSON 响应体（如二进制格式），只负责压缩
+     * @param bytes 未命中时生成响应字节
+     */
+    public EncodedBody getBytes(String key, Supplier<byte[]> bytes) {
+        return load(key, () -> compress(bytes.get()));
+    }
+
+    private EncodedBody load(String key, Supplier<EncodedBody> encoder) {
+        EncodedBody cached = bodies.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return encodeFlights.execute(key, () -> {
+            EncodedBody encoded = encoder.get();
+            bodies.put(key, encoded);
+            log.debug("Cached response body {} ({} bytes, gzip {} bytes)", key, encoded.getIdentity().length,
+                    encoded.hasGzip() ? encoded.getGzip().length : 0);
+            return encoded;
+        });
+    }
+
+    public CacheStatsDTO stats() {
+        return bodies.stats();
+    }
+
+    public void invalidateAll() {
+        bodies.invalidateAll();
+    }
+
+    private EncodedBody encode(Object value) {
+        try {
+            return compress(objectMapper.writeValueAsBytes(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error serialising response body", e);
+        }
+    }
+
+    private EncodedBody compress(byte[] data) {
+        try {
+            return new EncodedBody(data, data.length >= minCompressSize ? gzip(data) : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error compressing response body", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(data);
+        }
+        byte[] compressed = buffer.toByteArray();
+        return compressed.length < data.length ? compressed : null;
+    }
+}
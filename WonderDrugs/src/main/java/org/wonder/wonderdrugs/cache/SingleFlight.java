@@ -0,0 +1,79 @@
+package org.wonder.wonderdrugs.cache;
+
+import org.wonder.wonderdrugs.dto.CoalescingStatsDTO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 相同请求的并发合并（single-flight）
+ * 同一个键上第一个调用方执行加载，其余并发调用方等待同一次加载；加载完成后立即移除，不缓存结果。
+ * 结果可变时构造时提供复制函数，每个调用方各得一份副本，加载出的原始实例不交给任何调用方
+ *
+ * @param <K> 键类型
+ * @param <V> 结果类型；未提供复制函数时调用方共享同一实例，只能读取
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final UnaryOperator<V> copier;
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SingleFlight(String name) {
+        this(name, UnaryOperator.identity());
+    }
+
+    public SingleFlight(String name, UnaryOperator<V> copier) {
+        this.name = name;
+        this.copier = copier;
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return copier.apply(await(existing));
+        }
+
+        executions.incrementAndGet();
+        try {
+            V value = loader.get();
+            call.complete(value);
+            return copier.apply(value);
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    public CoalescingStatsDTO stats() {
+        return CoalescingStatsDTO.builder()
+                .name(name)
+                .executions(executions.get())
+                .coalesced(coalesced.get())
+                .inFlight(inFlight.size())
+                .build();
+    }
+
+    private V await(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.wonder.wonderdrugs.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.DataSourceInitializer;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+/**
+ * 可选的关系型站点存储
+ * 仅在 vault.store.enabled=true 时创建数据源并注册 MyBatis 映射器；
+ * 默认 URL 指向本地 H2 文件库（MySQL 兼容模式），多节点部署时改为共享的 MySQL
+ */
+@Configuration
+@ConditionalOnProperty(name = "vault.store.enabled", havingValue = "true")
+@MapperScan("org.wonder.wonderdrugs.store.mapper")
+public class StoreConfig {
+
+    @Value("${vault.store.url}")
+    private String url;
+
+    @Value("${vault.store.username:}")
+    private String username;
+
+    @Value("${vault.store.password:}")
+    private String password;
+
+    @Value("${vault.store.pool-size:5}")
+    private int poolSize;
+
+    @Value("${vault.store.initialize-schema:true}")
+    private boolean initializeSchema;
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource storeDataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("site-store");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+
+    @Bean
+    public DataSourceInitializer storeSchemaInitializer(DataSource storeDataSource) {
+        DataSourceInitializer initializer = new DataSourceInitializer();
+        initializer.setDataSource(storeDataSource);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("db/store-schema.sql")));
+        initializer.setEnabled(initializeSchema);
+        return initializer;
+    }
+}
@@ -0,0 +1,26 @@
+package org.wonder.wonderdrugs.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class StreamConfig {
+
+    @Value("${vault.stream.sender-threads:4}")
+    private int senderThreads;
+
+    /**
+     * SSE 推送线程池；写入慢客户端只占用这里的线程，不阻塞同步线程
+     */
+    @Bean
+    public ThreadPoolTaskExecutor siteStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(senderThreads);
+        executor.setMaxPoolSize(senderThreads);
+        executor.setThreadNamePrefix("site-stream-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
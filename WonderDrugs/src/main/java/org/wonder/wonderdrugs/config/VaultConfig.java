@@ -1,10 +1,27 @@
 package org.wonder.wonderdrugs.config;
 
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class VaultConfig {
 
@@ -14,9 +31,162 @@ public class VaultConfig {
     @Value("${vault.web.url}")
     private String vaultWebUrl;
 
+    // ================ HTTP transport ================
+    @Value("${vault.http.max-total:50}")
+    private int maxTotal;
+
+    @Value("${vault.http.max-per-route:40}")
+    private int maxPerRoute;
+
+    @Value("${vault.http.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    @Value("${vault.http.read-timeout:PT60S}")
+    private Duration readTimeout;
+
+    @Value("${vault.http.connection-request-timeout:PT10S}")
+    private Duration connectionRequestTimeout;
+
+    @Value("${vault.http.idle-eviction:PT30S}")
+    private Duration idleEviction;
+
+    @Value("${vault.http.keep-alive:PT60S}")
+    private Duration keepAlive;
+
+    @Value("${vault.http.validate-after-inactivity:PT2S}")
+    private Duration validateAfterInactivity;
+
+    // ================ Query paging ================
+    @Value("${vault.query.prefetch-threads:16}")
+    private int prefetchThreads;
+
+    // ================ Async queries ================
+    @Value("${vault.async.pool-size:16}")
+    private int asyncPoolSize;
+
+    @Value("${vault.async.queue-capacity:200}")
+    private int asyncQueueCapacity;
+
+    @Value("${vault.async.virtual-threads:false}")
+    private boolean asyncVirtualThreads;
+
+    // ================ Portfolio ================
+    @Value("${vault.portfolio.parallelism:4}")
+    private int portfolioParallelism;
+
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager vaultConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity((int) validateAfterInactivity.toMillis());
+        return connectionManager;
+    }
+
+    /**
+     * 连接池化的 HttpClient
+     * 默认发送 Accept-Encoding: gzip,deflate，并以流式方式透明解压响应体
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient vaultHttpClient(PoolingHttpClientConnectionManager vaultConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .setConnectionRequestTimeout((int) connectionRequestTimeout.toMillis())
+                .build();
+
+        long maxKeepAlive = keepAlive.toMillis();
+        return HttpClients.custom()
+                .setConnectionManager(vaultConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, maxKeepAlive) : maxKeepAlive;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEviction.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient vaultHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(vaultHttpClient));
+    }
+
+    /**
+     * 多页查询的预取线程池；第一页由调用线程抓取，只有存在 next_page 时才提交任务，每个任务抓取一页即返回。
+     * 队列满时拒绝新任务，迭代器随后在调用线程上抓取下一页，因此不会限制全局的 Vault 并发
+     */
+    @Bean
+    public ThreadPoolTaskExecutor vaultPrefetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(prefetchThreads);
+        executor.setMaxPoolSize(prefetchThreads);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("vault-prefetch-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * 异步 Vault 查询的专用线程池
+     * 默认使用有界线程池，队列满时由调用线程执行以形成背压；
+     * 在支持虚拟线程的 JDK 上可通过 vault.async.virtual-threads=true 切换为每任务一个虚拟线程。
+     * 每个异步查询在本线程上抓取当前页，至多再占用一个预取线程抓取下一页，
+     * 因此预取线程数与本线程池一致，每路由连接数不少于两者之和
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public AsyncTaskExecutor vaultQueryExecutor() {
+        if (asyncVirtualThreads) {
+            try {
+                ExecutorService virtualExecutor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+                return new ClosingTaskExecutorAdapter(virtualExecutor);
+            } catch (ReflectiveOperationException e) {
+                LoggerFactory.getLogger(VaultConfig.class)
+                        .warn("Virtual threads are not available on this JDK, using a bounded pool");
+            }
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(asyncPoolSize);
+        executor.setMaxPoolSize(asyncPoolSize);
+        executor.setQueueCapacity(asyncQueueCapacity);
+        executor.setThreadNamePrefix("vault-query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * 跨研究汇总时并发加载研究快照的线程池，线程数即同时向 Vault 加载的研究数；
+     * 与 vaultQueryExecutor 分开，避免加载任务占满异步查询线程而互相等待
+     */
+    @Bean
+    public ThreadPoolTaskExecutor portfolioExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(portfolioParallelism);
+        executor.setMaxPoolSize(portfolioParallelism);
+        executor.setThreadNamePrefix("portfolio-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    /**
+     * 容器关闭时一并关闭底层 ExecutorService 的适配器
+     */
+    private static final class ClosingTaskExecutorAdapter extends TaskExecutorAdapter implements DisposableBean {
+        private final ExecutorService executor;
+
+        private ClosingTaskExecutorAdapter(ExecutorService executor) {
+            super(executor);
+            this.executor = executor;
+        }
+
+        @Override
+        public void destroy() {
+            executor.shutdownNow();
+        }
     }
 
     public String getVaultUrl() {
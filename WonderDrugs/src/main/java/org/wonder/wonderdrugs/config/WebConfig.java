@@ -1,11 +1,53 @@
 package org.wonder.wonderdrugs.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.servlet.config.annotation.*;
+import org.wonder.wonderdrugs.service.VaultSessionManager;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final VaultSessionManager sessionManager;
+
+    @Autowired
+    public WebConfig(VaultSessionManager sessionManager) {
+        this.sessionManager = sessionManager;
+    }
+
+    /**
+     * 请求携带的用户会话在请求处理期间绑定到当前线程，使该用户触发的 Vault 查询使用自己的会话。
+     * 用过滤器而不是拦截器：异步请求（SSE）不会在原线程上回调 afterCompletion，
+     * finally 保证容器线程返回线程池前一定解除绑定
+     */
+    @Bean
+    public FilterRegistrationBean<OncePerRequestFilter> vaultSessionFilter() {
+        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain chain) throws ServletException, IOException {
+                sessionManager.bind(VaultSessionManager.sessionIdFrom(request.getHeader(HttpHeaders.AUTHORIZATION)));
+                try {
+                    chain.doFilter(request, response);
+                } finally {
+                    sessionManager.unbind();
+                }
+            }
+        });
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/**")
@@ -0,0 +1,95 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.wonder.wonderdrugs.cache.ResponseBodyCache;
+import org.wonder.wonderdrugs.dto.ApiResponse;
+import org.wonder.wonderdrugs.dto.CacheStatsDTO;
+import org.wonder.wonderdrugs.dto.CoalescingStatsDTO;
+import org.wonder.wonderdrugs.dto.HttpPoolStatsDTO;
+import org.wonder.wonderdrugs.dto.VaultSessionStatsDTO;
+import org.wonder.wonderdrugs.service.CountryService;
+import org.wonder.wonderdrugs.service.VaultService;
+import org.wonder.wonderdrugs.service.VaultSessionManager;
+import org.wonder.wonderdrugs.sync.StudySyncService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final CountryService countryService;
+    private final PoolingHttpClientConnectionManager vaultConnectionManager;
+    private final VaultService vaultService;
+    private final StudySyncService studySyncService;
+    private final ResponseBodyCache responseBodyCache;
+    private final VaultSessionManager sessionManager;
+
+    @Autowired
+    public AdminController(CountryService countryService,
+                           PoolingHttpClientConnectionManager vaultConnectionManager,
+                           VaultService vaultService,
+                           StudySyncService studySyncService,
+                           ResponseBodyCache responseBodyCache,
+                           VaultSessionManager sessionManager) {
+        this.countryService = countryService;
+        this.vaultConnectionManager = vaultConnectionManager;
+        this.vaultService = vaultService;
+        this.studySyncService = studySyncService;
+        this.responseBodyCache = responseBodyCache;
+        this.sessionManager = sessionManager;
+    }
+
+    @GetMapping("/cache/countries")
+    public ResponseEntity<CacheStatsDTO> getCountryCacheStats() {
+        return ResponseEntity.ok(countryService.getCacheStats());
+    }
+
+    @DeleteMapping("/cache/countries")
+    public ResponseEntity<ApiResponse<CacheStatsDTO>> invalidateCountryCache() {
+        countryService.invalidateCache();
+        return ResponseEntity.ok(ApiResponse.success(countryService.getCacheStats()));
+    }
+
+    @GetMapping("/cache/responses")
+    public ResponseEntity<CacheStatsDTO> getResponseCacheStats() {
+        return ResponseEntity.ok(responseBodyCache.stats());
+    }
+
+    @DeleteMapping("/cache/responses")
+    public ResponseEntity<ApiResponse<CacheStatsDTO>> invalidateResponseCache() {
+        responseBodyCache.invalidateAll();
+        return ResponseEntity.ok(ApiResponse.success(responseBodyCache.stats()));
+    }
+
+    @GetMapping("/http-pool")
+    public ResponseEntity<HttpPoolStatsDTO> getHttpPoolStats() {
+        PoolStats stats = vaultConnectionManager.getTotalStats();
+        return ResponseEntity.ok(HttpPoolStatsDTO.builder()
+                .leased(stats.getLeased())
+                .available(stats.getAvailable())
+                .pending(stats.getPending())
+                .max(stats.getMax())
+                .maxPerRoute(vaultConnectionManager.getDefaultMaxPerRoute())
+                .routes(vaultConnectionManager.getRoutes().size())
+                .build());
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<VaultSessionStatsDTO> getSessionStats() {
+        return ResponseEntity.ok(sessionManager.getStats());
+    }
+
+    @GetMapping("/coalescing")
+    public ResponseEntity<List<CoalescingStatsDTO>> getCoalescingStats() {
+        List<CoalescingStatsDTO> stats = new ArrayList<>();
+        stats.add(vaultService.getCoalescingStats());
+        stats.addAll(studySyncService.getCoalescingStats());
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,47 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.wonder.wonderdrugs.analytics.SiteAnalyticsService;
+import org.wonder.wonderdrugs.dto.StudyAnalyticsDTO;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySyncService;
+
+@RestController
+@RequestMapping("/api")
+public class AnalyticsController {
+
+    private final StudySyncService studySyncService;
+    private final SiteAnalyticsService siteAnalyticsService;
+
+    @Autowired
+    public AnalyticsController(StudySyncService studySyncService, SiteAnalyticsService siteAnalyticsService) {
+        this.studySyncService = studySyncService;
+        this.siteAnalyticsService = siteAnalyticsService;
+    }
+
+    /**
+     * 站点状态分布、国家分布和启动天数统计
+     * 响应只由站点内容决定，ETag 取站点指纹，站点未变化的刷新仍返回 304
+     */
+    @GetMapping("/{studyId}/analytics")
+    public ResponseEntity<StudyAnalyticsDTO> getAnalytics(@PathVariable String studyId, WebRequest request) {
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        String etag = ETags.of("analytics", snapshot.getSitesHash());
+        if (ETags.notModified(request, etag)) {
+            return StaleDataHeaders.apply(ResponseEntity.status(HttpStatus.NOT_MODIFIED),
+                            snapshot.isStale(), snapshot.getRefreshedAt())
+                    .eTag(etag)
+                    .build();
+        }
+        return StaleDataHeaders.apply(ResponseEntity.ok(), snapshot.isStale(), snapshot.getRefreshedAt())
+                .eTag(etag)
+                .body(siteAnalyticsService.getAnalytics(snapshot));
+    }
+}
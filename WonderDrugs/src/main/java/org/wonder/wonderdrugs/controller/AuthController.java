@@ -3,12 +3,14 @@ package org.wonder.wonderdrugs.controller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.wonder.wonderdrugs.dto.AuthRequest;
 import org.wonder.wonderdrugs.dto.AuthResponse;
 import org.wonder.wonderdrugs.service.VaultService;
+import org.wonder.wonderdrugs.service.VaultSessionManager;
 
 import java.util.Map;
 
@@ -55,20 +57,28 @@ public class AuthController {
     }
 
     @PostMapping("/keep-alive")
-    public ResponseEntity<AuthResponse> keepAlive() {
-        vaultService.keepAlive();
+    public ResponseEntity<AuthResponse> keepAlive(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        boolean alive = vaultService.keepAlive(VaultSessionManager.sessionIdFrom(authorization));
 
         AuthResponse response = new AuthResponse();
-        response.setStatus("success");
-        return ResponseEntity.ok(response);
+        if (alive) {
+            response.setStatus("success");
+            return ResponseEntity.ok(response);
+        } else {
+            response.setStatus("error");
+            response.setMessage("Session expired");
+            return ResponseEntity.status(401).body(response);
+        }
     }
 
 
     @PostMapping("/logout")
-    public ResponseEntity<AuthResponse> logout() {
+    public ResponseEntity<AuthResponse> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
         logger.info("处理注销请求");
 
-        boolean success = vaultService.logout();
+        boolean success = vaultService.logout(VaultSessionManager.sessionIdFrom(authorization));
 
         AuthResponse response = new AuthResponse();
         if (success) {
@@ -0,0 +1,65 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+import org.wonder.wonderdrugs.cache.ContentHash;
+
+/**
+ * 基于内容指纹的强 ETag
+ * 指纹来自内存快照，比较 If-None-Match 时不需要构建或序列化响应体
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * @param kind 资源类型，不同接口的 ETag 不会相同
+     * @param variant 影响响应内容的请求参数
+     */
+    static String of(String kind, long contentHash, Object... variant) {
+        return "\"" + kind + "-" + Long.toHexString(ContentHash.of(contentHash, variant(variant))) + "\"";
+    }
+
+    /**
+     * 响应体缓存键：直接包含内容指纹和请求参数的编码，不经过哈希，不同请求不会共用缓存条目
+     */
+    static String cacheKey(String kind, long contentHash, Object... variant) {
+        return kind + "-" + Long.toHexString(contentHash) + "|" + variant(variant);
+    }
+
+    /**
+     * 请求参数的无歧义编码：null 记为 "~"，其它值记为 "长度:值"，
+     * 因此 null 与空串不同，相邻参数之间也不会互相吞并
+     */
+    static String variant(Object... values) {
+        StringBuilder encoded = new StringBuilder();
+        for (Object value : values) {
+            if (value == null) {
+                encoded.append('~');
+            } else {
+                String text = value.toString();
+                encoded.append(text.length()).append(':').append(text);
+            }
+        }
+        return encoded.toString();
+    }
+
+    static boolean notModified(WebRequest request, String etag) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match 使用弱比较
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
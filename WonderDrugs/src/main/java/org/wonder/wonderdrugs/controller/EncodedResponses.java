@@ -0,0 +1,86 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import org.wonder.wonderdrugs.cache.EncodedBody;
+import org.wonder.wonderdrugs.cache.ResponseBodyCache;
+
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 从响应体缓存直接输出已序列化（必要时已压缩）的响应字节
+ */
+final class EncodedResponses {
+
+    private EncodedResponses() {
+    }
+
+    /**
+     * @param cacheKey 响应体缓存键，见 {@link ETags#cacheKey}；ETag 只含参数的指纹，不能作为缓存键
+     * @param etag 内容的强 ETag
+     * @param body 缓存未命中时构建响应对象
+     * @param headers 追加其它响应头
+     */
+    static ResponseEntity<byte[]> json(WebRequest request, ResponseBodyCache cache, String cacheKey, String etag,
+                                       Supplier<?> body, UnaryOperator<ResponseEntity.BodyBuilder> headers) {
+        return respond(request, etag, MediaType.APPLICATION_JSON, () -> cache.get(cacheKey, body), headers);
+    }
+
+    /**
+     * 输出已编码的二进制响应体，缓存和协商规则与 {@link #json} 相同
+     * @param bytes 缓存未命中时生成响应字节
+     */
+    static ResponseEntity<byte[]> binary(WebRequest request, ResponseBodyCache cache, String cacheKey, String etag,
+                                         MediaType mediaType, Supplier<byte[]> bytes,
+                                         UnaryOperator<ResponseEntity.BodyBuilder> headers) {
+        return respond(request, etag, mediaType, () -> cache.getBytes(cacheKey, bytes), headers);
+    }
+
+    private static ResponseEntity<byte[]> respond(WebRequest request, String etag, MediaType mediaType,
+                                                  Supplier<EncodedBody> body,
+                                                  UnaryOperator<ResponseEntity.BodyBuilder> headers) {
+        boolean acceptsGzip = acceptsGzip(request);
+        // gzip 与未压缩字节是同一内容的两种表示，各自使用不同的强 ETag
+        String gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+
+        if (ETags.notModified(request, etag) || ETags.notModified(request, gzipEtag)) {
+            return headers.apply(ResponseEntity.status(HttpStatus.NOT_MODIFIED))
+                    .eTag(acceptsGzip ? gzipEtag : etag)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        EncodedBody encoded = body.get();
+        ResponseEntity.BodyBuilder builder = headers.apply(ResponseEntity.ok())
+                .contentType(mediaType)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip && encoded.hasGzip()) {
+            return builder.eTag(gzipEtag)
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .contentLength(encoded.getGzip().length)
+                    .body(encoded.getGzip());
+        }
+        return builder.eTag(etag)
+                .contentLength(encoded.getIdentity().length)
+                .body(encoded.getIdentity());
+    }
+
+    private static boolean acceptsGzip(WebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (coding.equalsIgnoreCase("gzip") || coding.equals("*")) {
+                return tokens.length < 2 || !tokens[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,29 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.wonder.wonderdrugs.dto.PortfolioHealthDTO;
+import org.wonder.wonderdrugs.health.PortfolioHealthService;
+
+@RestController
+@RequestMapping("/api")
+public class PortfolioController {
+
+    private final PortfolioHealthService portfolioHealthService;
+
+    @Autowired
+    public PortfolioController(PortfolioHealthService portfolioHealthService) {
+        this.portfolioHealthService = portfolioHealthService;
+    }
+
+    /**
+     * 所有研究的站点健康汇总及评分最低的站点
+     */
+    @GetMapping("/site-health")
+    public ResponseEntity<PortfolioHealthDTO> getPortfolioHealth() {
+        return ResponseEntity.ok(portfolioHealthService.getPortfolioHealth());
+    }
+}
@@ -1,48 +1,300 @@
 package org.wonder.wonderdrugs.controller;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.wonder.wonderdrugs.cache.ResponseBodyCache;
+import org.wonder.wonderdrugs.dto.ApiResponse;
+import org.wonder.wonderdrugs.dto.NearbySiteDTO;
+import org.wonder.wonderdrugs.dto.SiteClusterDTO;
 import org.wonder.wonderdrugs.dto.SiteHealthDTO;
-import org.wonder.wonderdrugs.model.Country;
+import org.wonder.wonderdrugs.dto.SiteHealthHistoryDTO;
+import org.wonder.wonderdrugs.dto.SnapshotStatusDTO;
+import org.wonder.wonderdrugs.geo.BoundingBox;
+import org.wonder.wonderdrugs.geo.SiteClusterService;
+import org.wonder.wonderdrugs.geo.SiteColumnsEncoder;
+import org.wonder.wonderdrugs.geo.SiteSpatialService;
+import org.wonder.wonderdrugs.health.SiteHealthHistoryService;
 import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.paging.PageRequest;
+import org.wonder.wonderdrugs.paging.PagingService;
+import org.wonder.wonderdrugs.paging.SiteProjections;
 import org.wonder.wonderdrugs.service.SiteService;
+import org.wonder.wonderdrugs.store.SiteStore;
+import org.wonder.wonderdrugs.stream.SiteChangeStreamService;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySyncService;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
 public class SiteController {
 
     private final SiteService siteService;
+    private final StudySyncService studySyncService;
+    private final SiteClusterService siteClusterService;
+    private final SiteSpatialService siteSpatialService;
+    private final ResponseBodyCache responseBodyCache;
+    private final PagingService pagingService;
+    private final SiteChangeStreamService siteChangeStreamService;
+    private final SiteHealthHistoryService siteHealthHistoryService;
+    private final SiteStore siteStore;
 
     @Autowired
-    public SiteController(SiteService siteService) {
+    public SiteController(SiteService siteService,
+                          StudySyncService studySyncService,
+                          SiteClusterService siteClusterService,
+                          SiteSpatialService siteSpatialService,
+                          ResponseBodyCache responseBodyCache,
+                          PagingService pagingService,
+                          SiteChangeStreamService siteChangeStreamService,
+                          SiteHealthHistoryService siteHealthHistoryService,
+                          ObjectProvider<SiteStore> siteStore) {
         this.siteService = siteService;
+        this.studySyncService = studySyncService;
+        this.siteClusterService = siteClusterService;
+        this.siteSpatialService = siteSpatialService;
+        this.responseBodyCache = responseBodyCache;
+        this.pagingService = pagingService;
+        this.siteChangeStreamService = siteChangeStreamService;
+        this.siteHealthHistoryService = siteHealthHistoryService;
+        this.siteStore = siteStore.getIfAvailable();
     }
 
+    /**
+     * 获取站点，可按国家ID和状态过滤；启用站点存储且数据库已写入当前快照版本时过滤查询走数据库索引，
+     * 否则过滤快照，响应内容始终与 ETag 所依据的快照一致
+     */
     @GetMapping("/{studyId}/sites")
-    public ResponseEntity<List<Site>> getSites(@PathVariable String studyId) {
-        List<Site> sites = siteService.getSites(studyId);
-        return ResponseEntity.ok(sites);
+    public ResponseEntity<byte[]> getSites(@PathVariable String studyId,
+                                               @RequestParam(required = false) String country,
+                                               @RequestParam(required = false) String status,
+                                               WebRequest request) {
+        String countryId = blankToNull(country);
+        String siteStatus = blankToNull(status);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        return conditional(request, snapshot, () -> findSites(snapshot, countryId, siteStatus),
+                "sites", snapshot.getSitesHash(), countryId, siteStatus);
+    }
+
+    /**
+     * 地图渲染用的列式二进制站点数据，通过 Accept: {@value SiteColumnsEncoder#MEDIA_TYPE} 选择，
+     * 过滤参数与 JSON 格式相同
+     */
+    @GetMapping(value = "/{studyId}/sites", produces = SiteColumnsEncoder.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getSiteColumns(@PathVariable String studyId,
+                                                 @RequestParam(required = false) String country,
+                                                 @RequestParam(required = false) String status,
+                                                 WebRequest request) {
+        String countryId = blankToNull(country);
+        String siteStatus = blankToNull(status);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        long hash = snapshot.getSitesHash();
+        return EncodedResponses.binary(request, responseBodyCache,
+                ETags.cacheKey("site-columns", hash, countryId, siteStatus),
+                ETags.of("site-columns", hash, countryId, siteStatus),
+                MediaType.parseMediaType(SiteColumnsEncoder.MEDIA_TYPE),
+                () -> SiteColumnsEncoder.encode(findSites(snapshot, countryId, siteStatus)),
+                builder -> StaleDataHeaders.apply(builder, snapshot.isStale(), snapshot.getRefreshedAt()));
+    }
+
+    private List<Site> findSites(StudySnapshot snapshot, String country, String status) {
+        if (country == null && status == null) {
+            return snapshot.getSites();
+        }
+        if (siteStore != null && !snapshot.isStale()) {
+            List<Site> stored = siteStore.findSites(snapshot, country, status);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        return snapshot.getSites().stream()
+                .filter(site -> country == null || country.equals(site.getCountryId()))
+                .filter(site -> status == null || status.equals(site.getStatus()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 站点游标分页
+     * @param cursor 上一页返回的 nextCursor，省略时从第一页开始
+     * @param sort 排序字段，前缀 "-" 表示降序，默认按站点编号
+     * @param fields 逗号分隔的输出字段，省略时输出全部字段
+     */
+    @GetMapping("/{studyId}/sites/page")
+    public ResponseEntity<byte[]> getSitesPage(@PathVariable String studyId,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) String sort,
+                                               @RequestParam(required = false) String fields,
+                                               WebRequest request) {
+        PageRequest pageRequest = PageRequest.of(limit, cursor, sort, fields);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        String etag = ETags.of("sites-page", snapshot.getSitesHash(), pageRequest.getLimit(), pageRequest.getCursor(),
+                pageRequest.getSortField(), pageRequest.isDescending(), pageRequest.getFields());
+        if (ETags.notModified(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        byte[] page = pagingService.page(snapshot, SiteProjections.SITES, pageRequest);
+        return StaleDataHeaders.apply(ResponseEntity.ok(), snapshot.isStale(), snapshot.getRefreshedAt())
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(page);
+    }
+
+    /**
+     * 站点变化的 SSE 流：每次研究刷新后推送新增、变化和删除的站点（sites 事件），
+     * 重连时按 Last-Event-ID 补发；无法补发时推送 reset 事件
+     */
+    @GetMapping(value = "/{studyId}/sites/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSiteChanges(@PathVariable String studyId,
+                                        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return siteChangeStreamService.subscribe(studySyncService.getSnapshot(studyId), lastEventId);
+    }
+
+    /**
+     * 获取地图视口内的站点聚合
+     * @param bbox 视口范围 "minLon,minLat,maxLon,maxLat"，省略时返回整个地图
+     */
+    @GetMapping("/{studyId}/sites/clusters")
+    public ResponseEntity<List<SiteClusterDTO>> getSiteClusters(@PathVariable String studyId,
+                                                                @RequestParam int zoom,
+                                                                @RequestParam(required = false) String bbox) {
+        BoundingBox viewport = BoundingBox.parse(bbox);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        return ok(snapshot, siteClusterService.getClusters(snapshot, zoom, viewport));
+    }
+
+    /**
+     * 视口内的站点
+     * @param bbox 视口范围 "minLon,minLat,maxLon,maxLat"
+     */
+    @GetMapping("/{studyId}/sites/within")
+    public ResponseEntity<List<Site>> getSitesWithin(@PathVariable String studyId,
+                                                     @RequestParam String bbox,
+                                                     @RequestParam(required = false) String status,
+                                                     @RequestParam(required = false) String country) {
+        BoundingBox viewport = BoundingBox.parse(bbox);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        return ok(snapshot, siteSpatialService.findWithin(snapshot, viewport, blankToNull(status), blankToNull(country)));
+    }
+
+    /**
+     * 指定半径内的站点，按距离升序
+     */
+    @GetMapping("/{studyId}/sites/nearby")
+    public ResponseEntity<List<NearbySiteDTO>> getSitesNearby(@PathVariable String studyId,
+                                                              @RequestParam double lat,
+                                                              @RequestParam double lon,
+                                                              @RequestParam double radiusKm,
+                                                              @RequestParam(required = false) String status,
+                                                              @RequestParam(required = false) String country) {
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        return ok(snapshot, siteSpatialService.findNearby(snapshot, lat, lon, radiusKm, blankToNull(status), blankToNull(country)));
+    }
+
+    /**
+     * 距离最近的 k 个站点
+     */
+    @GetMapping("/{studyId}/sites/nearest")
+    public ResponseEntity<List<NearbySiteDTO>> getNearestSites(@PathVariable String studyId,
+                                                               @RequestParam double lat,
+                                                               @RequestParam double lon,
+                                                               @RequestParam(defaultValue = "10") int k,
+                                                               @RequestParam(required = false) String status,
+                                                               @RequestParam(required = false) String country) {
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        return ok(snapshot, siteSpatialService.findNearest(snapshot, lat, lon, k, blankToNull(status), blankToNull(country)));
     }
 
     @GetMapping("/{studyId}/countries")
-    public ResponseEntity<List<Country>> getCountries(@PathVariable String studyId) {
-        List<Country> countries = siteService.getCountries(studyId);
-        return ResponseEntity.ok(countries);
+    public ResponseEntity<byte[]> getCountries(@PathVariable String studyId, WebRequest request) {
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        return conditional(request, snapshot, snapshot::getCountries, "countries", snapshot.getCountriesHash());
     }
 
     @GetMapping("/status-colors")
-    public ResponseEntity<Map<String, String>> getStatusColors() {
+    public ResponseEntity<Map<String, String>> getStatusColors(WebRequest request) {
+        String etag = ETags.of("status-colors", siteService.getStatusColorsHash());
+        if (ETags.notModified(request, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
         Map<String, String> statusColors = siteService.getStatusColors();
-        return ResponseEntity.ok(statusColors);
+        return ResponseEntity.ok().eTag(etag).body(statusColors);
     }
 
     @GetMapping("/{studyId}/site-health")
     public ResponseEntity<List<SiteHealthDTO>> getSiteHealth(@PathVariable String studyId) {
-        List<SiteHealthDTO> healthData = siteService.getSiteHealthData(studyId);
-        return ResponseEntity.ok(healthData);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        List<SiteHealthDTO> healthData = siteService.getSiteHealthData(studyId, snapshot.getSites());
+        return ok(snapshot, healthData);
+    }
+
+    /**
+     * 站点健康评分历史及当前趋势
+     */
+    @GetMapping("/{studyId}/sites/{siteId}/health-history")
+    public ResponseEntity<SiteHealthHistoryDTO> getSiteHealthHistory(@PathVariable String studyId,
+                                                                     @PathVariable String siteId) {
+        SiteHealthHistoryDTO history = siteHealthHistoryService.getHistory(studyId, siteId);
+        if (history == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(history);
+    }
+
+    /**
+     * 站点健康游标分页，参数同 {@link #getSitesPage}；可按 healthScore 排序
+     */
+    @GetMapping("/{studyId}/site-health/page")
+    public ResponseEntity<byte[]> getSiteHealthPage(@PathVariable String studyId,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) String sort,
+                                                    @RequestParam(required = false) String fields) {
+        PageRequest pageRequest = PageRequest.of(limit, cursor, sort, fields);
+        StudySnapshot snapshot = studySyncService.getSnapshot(studyId);
+        byte[] page = pagingService.page(snapshot,
+                SiteProjections.siteHealth(siteHealthHistoryService.trends(studyId)), pageRequest);
+        return StaleDataHeaders.apply(ResponseEntity.ok(), snapshot.isStale(), snapshot.getRefreshedAt())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(page);
+    }
+
+    @PostMapping("/{studyId}/refresh")
+    public ResponseEntity<ApiResponse<SnapshotStatusDTO>> refresh(@PathVariable String studyId) {
+        return ResponseEntity.ok(ApiResponse.success(studySyncService.forceRefresh(studyId)));
+    }
+
+    /**
+     * 过期快照在响应头中标明，前端可据此提示数据可能不是最新的
+     */
+    private static <T> ResponseEntity<T> ok(StudySnapshot snapshot, T body) {
+        return StaleDataHeaders.apply(ResponseEntity.ok(), snapshot.isStale(), snapshot.getRefreshedAt()).body(body);
+    }
+
+    /**
+     * 空的过滤参数（如 ?country=）视为未指定
+     */
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    /**
+     * ETag 与 If-None-Match 匹配时直接返回 304；否则从响应体缓存输出，每次数据变化只序列化和压缩一次
+     */
+    private ResponseEntity<byte[]> conditional(WebRequest request, StudySnapshot snapshot, Supplier<?> body,
+                                               String kind, long contentHash, Object... variant) {
+        return EncodedResponses.json(request, responseBodyCache, ETags.cacheKey(kind, contentHash, variant),
+                ETags.of(kind, contentHash, variant), body,
+                builder -> StaleDataHeaders.apply(builder, snapshot.isStale(), snapshot.getRefreshedAt()));
     }
 }
@@ -0,0 +1,26 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+
+/**
+ * 过期数据响应头
+ */
+final class StaleDataHeaders {
+    static final String STALE = "X-Data-Stale";
+    static final String REFRESHED_AT = "X-Data-Refreshed-At";
+
+    private StaleDataHeaders() {
+    }
+
+    static ResponseEntity.BodyBuilder apply(ResponseEntity.BodyBuilder builder, boolean stale, long refreshedAt) {
+        if (stale) {
+            builder.header(STALE, "true");
+        }
+        if (refreshedAt > 0) {
+            builder.header(REFRESHED_AT, Instant.ofEpochMilli(refreshedAt).toString());
+        }
+        return builder;
+    }
+}
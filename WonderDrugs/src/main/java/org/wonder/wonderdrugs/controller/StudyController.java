@@ -3,10 +3,14 @@ package org.wonder.wonderdrugs.controller;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.wonder.wonderdrugs.cache.ResponseBodyCache;
+import org.wonder.wonderdrugs.dto.ApiResponse;
 import org.wonder.wonderdrugs.model.Study;
-import org.wonder.wonderdrugs.service.StudyService;
+import org.wonder.wonderdrugs.sync.StudySyncService;
 
 import java.util.List;
 
@@ -14,16 +18,26 @@ import java.util.List;
 @RequestMapping("/api/studies")
 public class StudyController {
 
-    private final StudyService studyService;
+    private final StudySyncService studySyncService;
+    private final ResponseBodyCache responseBodyCache;
 
     @Autowired
-    public StudyController(StudyService studyService) {
-        this.studyService = studyService;
+    public StudyController(StudySyncService studySyncService, ResponseBodyCache responseBodyCache) {
+        this.studySyncService = studySyncService;
+        this.responseBodyCache = responseBodyCache;
     }
 
     @GetMapping
-    public ResponseEntity<List<Study>> getStudies() {
-        List<Study> studies = studyService.getStudies();
-        return ResponseEntity.ok(studies);
+    public ResponseEntity<byte[]> getStudies(WebRequest request) {
+        long hash = studySyncService.getStudiesHash();
+        return EncodedResponses.json(request, responseBodyCache, ETags.cacheKey("studies", hash),
+                ETags.of("studies", hash), studySyncService::getStudies,
+                builder -> StaleDataHeaders.apply(builder,
+                        studySyncService.isStudiesStale(), studySyncService.getStudiesRefreshedAt()));
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<ApiResponse<List<Study>>> refresh() {
+        return ResponseEntity.ok(ApiResponse.success(studySyncService.refreshStudies()));
     }
 }
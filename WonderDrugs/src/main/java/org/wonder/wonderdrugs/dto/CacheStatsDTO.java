@@ -0,0 +1,39 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 缓存统计数据传输对象
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsDTO {
+    /** 缓存名称 */
+    private String name;
+
+    /** 当前条目数 */
+    private int size;
+
+    /** 最大条目数 */
+    private int maxSize;
+
+    /** 命中次数 */
+    private long hits;
+
+    /** 未命中次数 */
+    private long misses;
+
+    /** 因容量淘汰的次数 */
+    private long evictions;
+
+    /** 因过期淘汰的次数 */
+    private long expirations;
+
+    /** 命中率 */
+    private double hitRate;
+}
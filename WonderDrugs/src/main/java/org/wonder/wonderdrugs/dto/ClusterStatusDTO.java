@@ -0,0 +1,24 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 聚合内单个站点状态的统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterStatusDTO {
+    /** 站点状态 */
+    private String siteStatus;
+
+    /** 状态颜色 */
+    private String statusColor;
+
+    /** 站点数量 */
+    private int count;
+}
@@ -0,0 +1,27 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 请求合并统计数据传输对象
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CoalescingStatsDTO {
+    /** 合并器名称 */
+    private String name;
+
+    /** 实际执行的次数 */
+    private long executions;
+
+    /** 被合并到进行中请求的调用次数 */
+    private long coalesced;
+
+    /** 当前进行中的请求数 */
+    private int inFlight;
+}
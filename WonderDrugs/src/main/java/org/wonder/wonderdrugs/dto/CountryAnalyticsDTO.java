@@ -0,0 +1,32 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 单个国家的站点统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CountryAnalyticsDTO {
+    /** 国家ID */
+    private String countryId;
+
+    /** 国家名称 */
+    private String country;
+
+    /** 国家代码 */
+    private String countryCode;
+
+    /** 站点数量 */
+    private int siteCount;
+
+    /** 按站点状态（siteStatus）统计 */
+    private Map<String, Integer> bySiteStatus;
+}
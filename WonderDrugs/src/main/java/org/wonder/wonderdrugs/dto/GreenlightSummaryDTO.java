@@ -0,0 +1,38 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * daysToGreenlight 统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GreenlightSummaryDTO {
+    /** 有启动天数的站点数量 */
+    private int count;
+
+    /** 没有启动天数的站点数量 */
+    private int missing;
+
+    /** 最小值 */
+    private Integer min;
+
+    /** 最大值 */
+    private Integer max;
+
+    /** 平均值 */
+    private Double mean;
+
+    /** 中位数 */
+    private Integer median;
+
+    /** 分段统计 */
+    private Map<String, Integer> buckets;
+}
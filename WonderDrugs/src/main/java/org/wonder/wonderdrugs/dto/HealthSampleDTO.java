@@ -0,0 +1,23 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 一次健康评分采样
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HealthSampleDTO {
+    /** 采样时间 */
+    private Date timestamp;
+
+    /** 健康评分 */
+    private int healthScore;
+}
@@ -0,0 +1,33 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * HTTP 连接池统计数据传输对象
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HttpPoolStatsDTO {
+    /** 正在使用的连接数 */
+    private int leased;
+
+    /** 空闲可复用的连接数 */
+    private int available;
+
+    /** 等待获取连接的请求数 */
+    private int pending;
+
+    /** 连接池总容量 */
+    private int max;
+
+    /** 每个路由的最大连接数 */
+    private int maxPerRoute;
+
+    /** 已建立连接的路由数 */
+    private int routes;
+}
@@ -0,0 +1,22 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.wonder.wonderdrugs.model.Site;
+
+/**
+ * 附近站点查询结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbySiteDTO {
+    /** 站点 */
+    private Site site;
+
+    /** 与查询点的大圆距离（公里） */
+    private double distanceKm;
+}
@@ -0,0 +1,42 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 所有研究的站点健康汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioHealthDTO {
+    /** 研究数量 */
+    private int studyCount;
+
+    /** 站点总数 */
+    private int siteCount;
+
+    /** 所有站点的平均健康评分 */
+    private double meanScore;
+
+    /** 各健康状态的站点数量 */
+    private Map<String, Integer> distribution;
+
+    /** 需关注的站点数量 */
+    private int needsAttention;
+
+    /** 各研究的汇总，按平均评分升序 */
+    private List<StudyHealthDTO> studies;
+
+    /** 所有研究中评分最低的站点 */
+    private List<SiteHealthDTO> worstSites;
+
+    /** 在超时前未能加载的研究ID */
+    private List<String> incompleteStudies;
+}
@@ -0,0 +1,36 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.List;
+
+/**
+ * 两个快照版本之间的站点变化
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SiteChangesDTO {
+    /** 研究ID */
+    private String studyId;
+
+    /** 变化后的快照版本，同时作为 SSE 事件ID */
+    private long version;
+
+    /** 变化前的快照版本 */
+    private long previousVersion;
+
+    /** 新增站点 */
+    private List<Site> added;
+
+    /** 状态或坐标发生变化的站点（完整的新值） */
+    private List<Site> changed;
+
+    /** 删除的站点ID */
+    private List<String> removed;
+}
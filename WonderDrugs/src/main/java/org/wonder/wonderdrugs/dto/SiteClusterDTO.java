@@ -0,0 +1,32 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 地图站点聚合数据传输对象
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SiteClusterDTO {
+    /** 聚合中心纬度（站点坐标平均值） */
+    private double latitude;
+
+    /** 聚合中心经度（站点坐标平均值） */
+    private double longitude;
+
+    /** 站点数量 */
+    private int count;
+
+    /** 聚合只包含一个站点时的站点ID */
+    private String siteId;
+
+    /** 按站点状态统计的数量 */
+    private List<ClusterStatusDTO> statuses;
+}
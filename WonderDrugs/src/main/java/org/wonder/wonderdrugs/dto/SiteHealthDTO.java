@@ -18,6 +18,9 @@ public class SiteHealthDTO {
     /** 站点ID */
     private String id;
 
+    /** 研究ID（仅跨研究的汇总中填写） */
+    private String studyId;
+
     /** 站点名称 */
     private String name;
 
@@ -0,0 +1,32 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 站点健康评分历史
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SiteHealthHistoryDTO {
+    /** 研究ID */
+    private String studyId;
+
+    /** 站点ID */
+    private String siteId;
+
+    /** 趋势 */
+    private String trend;
+
+    /** 趋势窗口内的评分斜率（分/天） */
+    private double slopePerDay;
+
+    /** 按时间升序的采样 */
+    private List<HealthSampleDTO> samples;
+}
@@ -0,0 +1,35 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * 研究快照状态数据传输对象
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotStatusDTO {
+    /** 研究ID */
+    private String studyId;
+
+    /** 快照版本号 */
+    private long version;
+
+    /** 最后刷新时间 */
+    private Date refreshedAt;
+
+    /** 站点数量 */
+    private int siteCount;
+
+    /** 国家数量 */
+    private int countryCount;
+
+    /** 是否为过期数据（来自磁盘恢复或刷新失败） */
+    private boolean stale;
+}
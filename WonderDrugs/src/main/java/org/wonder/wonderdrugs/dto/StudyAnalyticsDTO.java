@@ -0,0 +1,36 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 研究的站点统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudyAnalyticsDTO {
+    /** 研究ID */
+    private String studyId;
+
+    /** 站点总数 */
+    private int siteCount;
+
+    /** 按站点状态（siteStatus）统计 */
+    private Map<String, Integer> bySiteStatus;
+
+    /** 按记录状态（status）统计 */
+    private Map<String, Integer> byStatus;
+
+    /** 按国家统计，按站点数降序 */
+    private List<CountryAnalyticsDTO> byCountry;
+
+    /** 启动天数统计 */
+    private GreenlightSummaryDTO daysToGreenlight;
+}
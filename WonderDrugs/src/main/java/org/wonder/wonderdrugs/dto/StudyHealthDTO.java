@@ -0,0 +1,45 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个研究的站点健康汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StudyHealthDTO {
+    /** 研究ID */
+    private String studyId;
+
+    /** 研究编号 */
+    private String studyNumber;
+
+    /** 研究名称 */
+    private String studyName;
+
+    /** 站点数量 */
+    private int siteCount;
+
+    /** 平均健康评分 */
+    private double meanScore;
+
+    /** 各健康状态的站点数量 */
+    private Map<String, Integer> distribution;
+
+    /** 需关注的站点数量 */
+    private int needsAttention;
+
+    /** 数据是否来自过期快照 */
+    private boolean stale;
+
+    /** 评分最低的站点 */
+    private List<SiteHealthDTO> worstSites;
+}
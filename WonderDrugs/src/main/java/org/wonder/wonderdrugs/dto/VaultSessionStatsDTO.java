@@ -0,0 +1,30 @@
+package org.wonder.wonderdrugs.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Vault 会话池统计数据传输对象
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VaultSessionStatsDTO {
+    /** 当前的用户会话数 */
+    private int userSessions;
+
+    /** 当前的服务账号会话数 */
+    private int serviceSessions;
+
+    /** 调度器发出的 keep-alive 续期次数 */
+    private long renewals;
+
+    /** 服务账号重新登录的次数 */
+    private long reauthentications;
+
+    /** 因过期或被 Vault 拒绝而移除的会话数 */
+    private long expirations;
+}
@@ -16,6 +16,15 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(VaultApiException.class)
     public ResponseEntity<ApiResponse<Void>> handleVaultApiException(VaultApiException ex) {
         logger.error("Vault API exception: {}", ex.getMessage());
+        HttpStatus status = HttpStatus.resolve(ex.getStatusCode());
+        return ResponseEntity
+                .status(status != null ? status : HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponse<Void>> handleIllegalArgumentException(IllegalArgumentException ex) {
+        logger.warn("Invalid request: {}", ex.getMessage());
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
                 .body(ApiResponse.error(ex.getMessage()));
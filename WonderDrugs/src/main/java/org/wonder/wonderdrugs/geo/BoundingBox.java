@@ -0,0 +1,65 @@
+package org.wonder.wonderdrugs.geo;
+
+/**
+ * 地图视口范围，minLon 大于 maxLon 表示跨越 180° 经线
+ */
+public final class BoundingBox {
+    private final double minLon;
+    private final double minLat;
+    private final double maxLon;
+    private final double maxLat;
+
+    public BoundingBox(double minLon, double minLat, double maxLon, double maxLat) {
+        if (minLat > maxLat) {
+            throw new IllegalArgumentException("bbox minLat must not exceed maxLat");
+        }
+        this.minLon = minLon;
+        this.minLat = minLat;
+        this.maxLon = maxLon;
+        this.maxLat = maxLat;
+    }
+
+    /**
+     * 解析 "minLon,minLat,maxLon,maxLat" 格式的范围
+     * @return 范围，参数为空时返回 null 表示整个地图
+     * @throws IllegalArgumentException 格式错误时抛出
+     */
+    public static BoundingBox parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+        }
+        try {
+            return new BoundingBox(
+                    Double.parseDouble(parts[0].trim()),
+                    Double.parseDouble(parts[1].trim()),
+                    Double.parseDouble(parts[2].trim()),
+                    Double.parseDouble(parts[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bbox contains an invalid number: " + value);
+        }
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public boolean crossesAntimeridian() {
+        return minLon > maxLon;
+    }
+}
@@ -0,0 +1,256 @@
+package org.wonder.wonderdrugs.geo;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * 以数组隐式存放的 k-d 树
+ * 构建时按层交替维度取中位数划分，区间 [lo, hi) 的中点即为子树根，不需要节点对象；
+ * 坐标按树序连续存放在一个 double 数组中。点由构建时的下标标识
+ */
+final class KdTree {
+    private final int dims;
+    private final double[] coords;
+    private final int[] ids;
+
+    /**
+     * @param points 按点排列的坐标，长度为 点数 * dims
+     */
+    KdTree(double[] points, int dims) {
+        this.dims = dims;
+        int n = points.length / dims;
+        this.ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        build(points, 0, n, 0);
+
+        this.coords = new double[points.length];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(points, ids[i] * dims, coords, i * dims, dims);
+        }
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * 遍历落在 [min, max] 各维闭区间内的点
+     */
+    void range(double[] min, double[] max, IntConsumer consumer) {
+        range(0, ids.length, 0, min, max, consumer);
+    }
+
+    /**
+     * 查找满足条件的 k 个最近点（欧氏距离）
+     * @return 按距离升序排列的点下标
+     */
+    int[] nearest(double[] query, int k, IntPredicate filter) {
+        if (k <= 0 || ids.length == 0) {
+            return new int[0];
+        }
+        // k 大于点数时按点数分配，避免空树或小树上为 k 预分配
+        BoundedMaxHeap heap = new BoundedMaxHeap(Math.min(k, ids.length));
+        nearest(0, ids.length, 0, query, filter, heap);
+        return heap.drainAscending();
+    }
+
+    // ================ Build ================
+
+    private void build(double[] points, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int axis = depth % dims;
+        int mid = (lo + hi) >>> 1;
+        select(points, lo, hi - 1, mid, axis);
+        build(points, lo, mid, depth + 1);
+        build(points, mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * 快速选择：使 ids[k] 为 [left, right] 区间内 axis 维的第 k 小，左侧不大于、右侧不小于它
+     */
+    private void select(double[] points, int left, int right, int k, int axis) {
+        while (right > left) {
+            int pivotIndex = (left + right) >>> 1;
+            double pivot = points[ids[pivotIndex] * dims + axis];
+            swap(pivotIndex, right);
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (points[ids[i] * dims + axis] < pivot) {
+                    swap(i, store++);
+                }
+            }
+            swap(store, right);
+            if (store == k) {
+                return;
+            } else if (store < k) {
+                left = store + 1;
+            } else {
+                right = store - 1;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        int tmp = ids[i];
+        ids[i] = ids[j];
+        ids[j] = tmp;
+    }
+
+    // ================ Queries ================
+
+    private void range(int lo, int hi, int depth, double[] min, double[] max, IntConsumer consumer) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int axis = depth % dims;
+            double value = coords[mid * dims + axis];
+
+            if (contains(mid, min, max)) {
+                consumer.accept(ids[mid]);
+            }
+            boolean left = min[axis] <= value;
+            boolean right = max[axis] >= value;
+            depth++;
+            if (left && right) {
+                range(lo, mid, depth, min, max, consumer);
+                lo = mid + 1;
+            } else if (left) {
+                hi = mid;
+            } else if (right) {
+                lo = mid + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private boolean contains(int node, double[] min, double[] max) {
+        int offset = node * dims;
+        for (int d = 0; d < dims; d++) {
+            double value = coords[offset + d];
+            if (value < min[d] || value > max[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void nearest(int lo, int hi, int depth, double[] query, IntPredicate filter, BoundedMaxHeap heap) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int axis = depth % dims;
+
+        if (filter.test(ids[mid])) {
+            heap.offer(ids[mid], distanceSquared(mid, query));
+        }
+
+        double diff = query[axis] - coords[mid * dims + axis];
+        if (diff < 0) {
+            nearest(lo, mid, depth + 1, query, filter, heap);
+            if (diff * diff < heap.bound()) {
+                nearest(mid + 1, hi, depth + 1, query, filter, heap);
+            }
+        } else {
+            nearest(mid + 1, hi, depth + 1, query, filter, heap);
+            if (diff * diff < heap.bound()) {
+                nearest(lo, mid, depth + 1, query, filter, heap);
+            }
+        }
+    }
+
+    private double distanceSquared(int node, double[] query) {
+        int offset = node * dims;
+        double sum = 0;
+        for (int d = 0; d < dims; d++) {
+            double diff = coords[offset + d] - query[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * 容量固定的最大堆，保留距离最小的 k 个点
+     */
+    private static final class BoundedMaxHeap {
+        private final int[] ids;
+        private final double[] distances;
+        private int size;
+
+        private BoundedMaxHeap(int capacity) {
+            this.ids = new int[capacity];
+            this.distances = new double[capacity];
+        }
+
+        private double bound() {
+            return size < ids.length ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        private void offer(int id, double distance) {
+            if (size < ids.length) {
+                ids[size] = id;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                ids[0] = id;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        private int[] drainAscending() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = ids[0];
+                size--;
+                ids[0] = ids[size];
+                distances[0] = distances[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            double distance = distances[i];
+            distances[i] = distances[j];
+            distances[j] = distance;
+        }
+    }
+}
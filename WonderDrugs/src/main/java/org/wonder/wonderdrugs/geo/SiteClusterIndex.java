@@ -0,0 +1,341 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.wonder.wonderdrugs.dto.ClusterStatusDTO;
+import org.wonder.wonderdrugs.dto.SiteClusterDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+
+import java.util.*;
+
+/**
+ * 站点的分层网格聚合索引
+ * 网格与 Web Mercator 瓦片对齐：缩放级别 z 下每个瓦片在每个方向划分 2^CELL_BITS 格。
+ * 站点按最细一级格子的 Morton 码排序，任一级别的父格子都对应排序后的一段连续区间，
+ * 因此每一级只需顺序合并下一级的相邻格子即可得到，构建为一次排序加线性扫描。
+ * 视口查询在视口两角的 Morton 码区间内二分查找，遇到区间内但视口外的格子时用 BIGMIN 跳到下一个视口内的码值，
+ * 只访问视口附近的格子。索引构建后不可变
+ */
+public final class SiteClusterIndex {
+    public static final int MAX_ZOOM = 18;
+
+    // 每个 256px 瓦片在每个方向划分 4 格，即约 64px 的聚合半径
+    private static final int CELL_BITS = 2;
+    private static final int FINEST_BITS = MAX_ZOOM + CELL_BITS;
+    // 排序键低位存放站点下标
+    private static final int INDEX_BITS = 63 - 2 * FINEST_BITS;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final long version;
+    private final String[] statuses;
+    private final String[] colors;
+    private final Level[] levels;
+
+    private SiteClusterIndex(long version, String[] statuses, String[] colors, Level[] levels) {
+        this.version = version;
+        this.statuses = statuses;
+        this.colors = colors;
+        this.levels = levels;
+    }
+
+    public static SiteClusterIndex build(StudySnapshot snapshot) {
+        List<Site> sites = snapshot.getSites();
+        int n = sites.size();
+        if (n >= 1 << INDEX_BITS) {
+            throw new IllegalArgumentException("Too many sites to cluster: " + n);
+        }
+
+        // 状态和颜色的组合编号，聚合中按编号计数
+        Map<List<String>, Integer> statusIds = new LinkedHashMap<>();
+        int[] siteStatus = new int[n];
+        long[] keys = new long[n];
+        int located = 0;
+        for (int i = 0; i < n; i++) {
+            Site site = sites.get(i);
+            // 缺少坐标的站点（NaN）无法放入网格
+            if (!Double.isFinite(site.getLatitude()) || !Double.isFinite(site.getLongitude())) {
+                continue;
+            }
+            siteStatus[i] = statusIds.computeIfAbsent(
+                    Arrays.asList(site.getSiteStatus(), site.getStatusColor()), key -> statusIds.size());
+            long morton = interleave(cellX(site.getLongitude(), FINEST_BITS), cellY(site.getLatitude(), FINEST_BITS));
+            keys[located++] = (morton << INDEX_BITS) | i;
+        }
+        Arrays.sort(keys, 0, located);
+        int statusCount = statusIds.size();
+        if (located < n) {
+            keys = Arrays.copyOf(keys, located);
+        }
+
+        Level[] levels = new Level[MAX_ZOOM + 1];
+        levels[MAX_ZOOM] = Level.fromSites(sites, keys, siteStatus, statusCount);
+        for (int zoom = MAX_ZOOM - 1; zoom >= 0; zoom--) {
+            levels[zoom] = Level.fromChildren(levels[zoom + 1]);
+        }
+
+        String[] statuses = new String[statusCount];
+        String[] colors = new String[statusCount];
+        statusIds.forEach((pair, id) -> {
+            statuses[id] = pair.get(0);
+            colors[id] = pair.get(1);
+        });
+        return new SiteClusterIndex(snapshot.getVersion(), statuses, colors, levels);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param zoom 地图缩放级别，超出 0..MAX_ZOOM 时取边界值
+     * @param bbox 视口范围，null 表示整个地图
+     */
+    public List<SiteClusterDTO> clusters(int zoom, BoundingBox bbox) {
+        int z = Math.max(0, Math.min(MAX_ZOOM, zoom));
+        Level level = levels[z];
+        List<SiteClusterDTO> result = new ArrayList<>();
+        if (bbox == null) {
+            level.collect(0, Integer.MAX_VALUE, 0, Integer.MAX_VALUE, this, result);
+            return result;
+        }
+
+        int bits = z + CELL_BITS;
+        int minY = cellY(bbox.getMaxLat(), bits);
+        int maxY = cellY(bbox.getMinLat(), bits);
+        if (bbox.crossesAntimeridian()) {
+            int west = cellX(bbox.getMinLon(), bits);
+            int east = cellX(bbox.getMaxLon(), bits);
+            if (east >= west) {
+                // 两段在低缩放级别落入同一列格子时已覆盖全部经度，分两段会重复返回同一格子
+                level.collect(0, Integer.MAX_VALUE, minY, maxY, this, result);
+            } else {
+                level.collect(west, Integer.MAX_VALUE, minY, maxY, this, result);
+                level.collect(0, east, minY, maxY, this, result);
+            }
+        } else {
+            level.collect(cellX(bbox.getMinLon(), bits), cellX(bbox.getMaxLon(), bits), minY, maxY, this, result);
+        }
+        return result;
+    }
+
+    // ================ Grid Helpers ================
+
+    static int cellX(double longitude, int bits) {
+        double x = (longitude + 180.0) / 360.0;
+        return clampCell(x, bits);
+    }
+
+    static int cellY(double latitude, int bits) {
+        double lat = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        double y = (1.0 - Math.log(Math.tan(lat) + 1.0 / Math.cos(lat)) / Math.PI) / 2.0;
+        return clampCell(y, bits);
+    }
+
+    private static int clampCell(double fraction, int bits) {
+        int size = 1 << bits;
+        int cell = (int) Math.floor(fraction * size);
+        return Math.max(0, Math.min(size - 1, cell));
+    }
+
+    static long interleave(int x, int y) {
+        return (spread(x) << 1) | spread(y);
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Tropf-Herzog BIGMIN：大于 code 且落在 [zmin, zmax] 对应矩形内的最小 Morton 码
+     * @param code 位于 zmin..zmax 之间但在矩形外的码值
+     */
+    static long bigMin(long code, long zmin, long zmax, int bits) {
+        long bigMin = zmax;
+        for (int b = 2 * bits - 1; b >= 0; b--) {
+            long bit = 1L << b;
+            // 与第 b 位同一坐标轴的更低位
+            long lower = (0x5555555555555555L << (b & 1)) & (bit - 1);
+            boolean c = (code & bit) != 0;
+            boolean lo = (zmin & bit) != 0;
+            boolean hi = (zmax & bit) != 0;
+            if (!c && !lo && hi) {
+                bigMin = (zmin | bit) & ~lower;
+                zmax = (zmax & ~bit) | lower;
+            } else if (!c && lo) {
+                return zmin;
+            } else if (c && !hi) {
+                return bigMin;
+            } else if (c && !lo) {
+                zmin = (zmin | bit) & ~lower;
+            }
+        }
+        return bigMin;
+    }
+
+    private static int compact(long value) {
+        long v = value & 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int) v;
+    }
+
+    /**
+     * 单个缩放级别的格子，以并列数组按 Morton 码排序存放
+     */
+    private static final class Level {
+        private final long[] codes;
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] counts;
+        private final double[] latitudeSums;
+        private final double[] longitudeSums;
+        private final int[] statusCounts;
+        private final String[] siteIds;
+        private final int statusCount;
+        private final int bits;
+
+        private Level(int size, int statusCount, int bits) {
+            this.codes = new long[size];
+            this.xs = new int[size];
+            this.ys = new int[size];
+            this.counts = new int[size];
+            this.latitudeSums = new double[size];
+            this.longitudeSums = new double[size];
+            this.statusCounts = new int[size * statusCount];
+            this.siteIds = new String[size];
+            this.statusCount = statusCount;
+            this.bits = bits;
+        }
+
+        private static Level fromSites(List<Site> sites, long[] keys, int[] siteStatus, int statusCount) {
+            int size = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (i == 0 || (keys[i] >>> INDEX_BITS) != (keys[i - 1] >>> INDEX_BITS)) {
+                    size++;
+                }
+            }
+
+            Level level = new Level(size, statusCount, FINEST_BITS);
+            int cell = -1;
+            for (int i = 0; i < keys.length; i++) {
+                long code = keys[i] >>> INDEX_BITS;
+                if (cell < 0 || code != level.codes[cell]) {
+                    level.codes[++cell] = code;
+                }
+                int index = (int) (keys[i] & ((1L << INDEX_BITS) - 1));
+                Site site = sites.get(index);
+                level.counts[cell]++;
+                level.latitudeSums[cell] += site.getLatitude();
+                level.longitudeSums[cell] += site.getLongitude();
+                level.statusCounts[cell * statusCount + siteStatus[index]]++;
+                level.siteIds[cell] = level.counts[cell] == 1 ? site.getId() : null;
+            }
+            level.fillCoordinates();
+            return level;
+        }
+
+        private static Level fromChildren(Level child) {
+            int size = 0;
+            for (int i = 0; i < child.codes.length; i++) {
+                if (i == 0 || (child.codes[i] >>> 2) != (child.codes[i - 1] >>> 2)) {
+                    size++;
+                }
+            }
+
+            int statusCount = child.statusCount;
+            Level level = new Level(size, statusCount, child.bits - 1);
+            int cell = -1;
+            for (int i = 0; i < child.codes.length; i++) {
+                long code = child.codes[i] >>> 2;
+                if (cell < 0 || code != level.codes[cell]) {
+                    level.codes[++cell] = code;
+                    level.siteIds[cell] = child.siteIds[i];
+                } else {
+                    level.siteIds[cell] = null;
+                }
+                level.counts[cell] += child.counts[i];
+                level.latitudeSums[cell] += child.latitudeSums[i];
+                level.longitudeSums[cell] += child.longitudeSums[i];
+                for (int s = 0; s < statusCount; s++) {
+                    level.statusCounts[cell * statusCount + s] += child.statusCounts[i * statusCount + s];
+                }
+            }
+            level.fillCoordinates();
+            return level;
+        }
+
+        private void fillCoordinates() {
+            for (int i = 0; i < codes.length; i++) {
+                xs[i] = compact(codes[i] >>> 1);
+                ys[i] = compact(codes[i]);
+            }
+        }
+
+        private void collect(int minX, int maxX, int minY, int maxY,
+                             SiteClusterIndex index, List<SiteClusterDTO> result) {
+            int limit = (1 << bits) - 1;
+            maxX = Math.min(maxX, limit);
+            maxY = Math.min(maxY, limit);
+            if (minX > maxX || minY > maxY) {
+                return;
+            }
+            long zmin = interleave(minX, minY);
+            long zmax = interleave(maxX, maxY);
+            int i = lowerBound(zmin, 0);
+            while (i < codes.length && codes[i] <= zmax) {
+                if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+                    result.add(toCluster(i, index));
+                    i++;
+                } else {
+                    i = lowerBound(bigMin(codes[i], zmin, zmax, bits), i + 1);
+                }
+            }
+        }
+
+        /**
+         * @return from 之后第一个码值不小于 code 的格子下标
+         */
+        private int lowerBound(long code, int from) {
+            int low = from;
+            int high = codes.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (codes[mid] < code) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private SiteClusterDTO toCluster(int i, SiteClusterIndex index) {
+            List<ClusterStatusDTO> statuses = new ArrayList<>();
+            for (int s = 0; s < statusCount; s++) {
+                int count = statusCounts[i * statusCount + s];
+                if (count > 0) {
+                    statuses.add(ClusterStatusDTO.builder()
+                            .siteStatus(index.statuses[s])
+                            .statusColor(index.colors[s])
+                            .count(count)
+                            .build());
+                }
+            }
+            return SiteClusterDTO.builder()
+                    .latitude(latitudeSums[i] / counts[i])
+                    .longitude(longitudeSums[i] / counts[i])
+                    .count(counts[i])
+                    .siteId(siteIds[i])
+                    .statuses(statuses)
+                    .build();
+        }
+    }
+}
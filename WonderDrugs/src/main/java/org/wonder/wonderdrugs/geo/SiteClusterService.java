@@ -0,0 +1,37 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.dto.SiteClusterDTO;
+import org.wonder.wonderdrugs.sync.SnapshotIndexCache;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySnapshotUpdatedEvent;
+
+import java.util.List;
+
+/**
+ * 站点地图聚合服务
+ * 每个研究保留一个与快照版本对应的聚合索引，快照更新时在同步线程上重建，
+ * 从磁盘恢复的快照在第一次请求时构建
+ */
+@Service
+public class SiteClusterService {
+
+    private final SnapshotIndexCache<SiteClusterIndex> indexes =
+            new SnapshotIndexCache<>("cluster", SiteClusterIndex::build);
+
+    public List<SiteClusterDTO> getClusters(StudySnapshot snapshot, int zoom, BoundingBox bbox) {
+        return indexes.get(snapshot).clusters(zoom, bbox);
+    }
+
+    @EventListener
+    public void onSnapshotUpdated(StudySnapshotUpdatedEvent event) {
+        indexes.get(event.getSnapshot());
+    }
+
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        indexes.remove(event.getStudyId());
+    }
+}
@@ -0,0 +1,156 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.wonder.wonderdrugs.model.Site;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 地图渲染用的列式二进制站点格式，只包含ID、坐标和状态
+ * <pre>
+ * 偏移   类型                  内容
+ * 0      u32                  magic "WDSC"
+ * 4      u16                  格式版本
+ * 6      u16                  状态字典条目数 m
+ * 8      u32                  站点数 n
+ * 12     u32                  ID 字符串区字节数 b
+ * 16     f32[n]               纬度
+ *        f32[n]               经度
+ *        u32[n + 1]           每个ID在字符串区中的起始偏移，最后一项为 b
+ *        u8[n]                状态下标，0xFF 表示无状态
+ *        u8[b]                ID 的 UTF-8 字符串区
+ *        m × (u8 长度, UTF-8 状态, u8 长度, UTF-8 颜色)
+ * </pre>
+ * 全部为小端序，定长数组都从 4 字节对齐的位置开始，浏览器可直接用
+ * {@code new Float32Array(buffer, offset, n)} 映射，无需逐项解析
+ */
+public final class SiteColumnsEncoder {
+    public static final String MEDIA_TYPE = "application/vnd.wonderdrugs.site-columns";
+
+    private static final int MAGIC = 'W' | 'D' << 8 | 'S' << 16 | 'C' << 24;
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int NO_STATUS = 0xFF;
+    private static final int MAX_STATUSES = 255;
+    private static final int MAX_LABEL_BYTES = 255;
+
+    private SiteColumnsEncoder() {
+    }
+
+    public static byte[] encode(List<Site> sites) {
+        int count = sites.size();
+        // 第一遍：状态字典和字符串区大小
+        Map<String, Integer> statusIndex = new LinkedHashMap<>();
+        Map<String, String> statusColors = new LinkedHashMap<>();
+        int idBytes = 0;
+        for (Site site : sites) {
+            idBytes += utf8Length(site.getId());
+            String status = site.getSiteStatus();
+            if (status != null && statusIndex.size() < MAX_STATUSES && !statusIndex.containsKey(status)) {
+                statusIndex.put(status, statusIndex.size());
+                statusColors.put(status, site.getStatusColor());
+            }
+        }
+        byte[][] dictionary = new byte[statusIndex.size() * 2][];
+        int dictionaryBytes = 0;
+        int entry = 0;
+        for (Map.Entry<String, String> status : statusColors.entrySet()) {
+            dictionary[entry] = label(status.getKey());
+            dictionary[entry + 1] = label(status.getValue());
+            dictionaryBytes += 2 + dictionary[entry].length + dictionary[entry + 1].length;
+            entry += 2;
+        }
+
+        int size = HEADER_SIZE + count * 4 * 2 + (count + 1) * 4 + count + idBytes + dictionaryBytes;
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC)
+                .putShort(FORMAT_VERSION)
+                .putShort((short) statusIndex.size())
+                .putInt(count)
+                .putInt(idBytes);
+
+        // 第二遍：按列写入，各列起始位置已知，可以一次遍历同时写完所有列
+        int latitudes = HEADER_SIZE;
+        int longitudes = latitudes + count * 4;
+        int offsets = longitudes + count * 4;
+        int statuses = offsets + (count + 1) * 4;
+        int strings = statuses + count;
+        int idOffset = 0;
+        for (int i = 0; i < count; i++) {
+            Site site = sites.get(i);
+            buffer.putFloat(latitudes + i * 4, (float) site.getLatitude());
+            buffer.putFloat(longitudes + i * 4, (float) site.getLongitude());
+            buffer.putInt(offsets + i * 4, idOffset);
+            Integer status = site.getSiteStatus() != null ? statusIndex.get(site.getSiteStatus()) : null;
+            buffer.put(statuses + i, (byte) (status != null ? status : NO_STATUS));
+            idOffset += putUtf8(buffer, strings + idOffset, site.getId());
+        }
+        buffer.putInt(offsets + count * 4, idOffset);
+
+        buffer.position(strings + idBytes);
+        for (byte[] value : dictionary) {
+            buffer.put((byte) value.length).put(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] label(String value) {
+        String text = value != null ? value : "";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > MAX_LABEL_BYTES) {
+            text = text.substring(0, text.length() - 1);
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // 不成对的代理字符编码为 '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 在指定位置写入 UTF-8，Vault ID 都是 ASCII，逐字符写入避免为每个站点分配字节数组
+     * @return 写入的字节数
+     */
+    private static int putUtf8(ByteBuffer buffer, int index, String value) {
+        if (value == null) {
+            return 0;
+        }
+        int start = index;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                byte[] bytes = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                buffer.put(index, bytes);
+                return index - start + bytes.length;
+            }
+            buffer.put(index++, (byte) c);
+        }
+        return index - start;
+    }
+}
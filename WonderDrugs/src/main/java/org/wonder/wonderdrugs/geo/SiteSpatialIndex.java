@@ -0,0 +1,148 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.wonder.wonderdrugs.dto.NearbySiteDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * 研究站点的空间索引
+ * 视口查询使用 (经度, 纬度) 二维 k-d 树；半径和最近邻查询把坐标转换为单位球面上的三维向量，
+ * 在三维 k-d 树中按弦长搜索，弦长与大圆距离单调对应，因此不受 180° 经线和极区影响。
+ * 查询代价与结果数量和树高相关，而不是站点总数。缺少坐标（NaN）的站点不进入索引，任何空间查询都不会返回它们。
+ * 索引构建后不可变
+ */
+public final class SiteSpatialIndex {
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final List<Site> sites;
+    private final KdTree planar;
+    private final KdTree spherical;
+
+    private SiteSpatialIndex(List<Site> sites, KdTree planar, KdTree spherical) {
+        this.sites = sites;
+        this.planar = planar;
+        this.spherical = spherical;
+    }
+
+    public static SiteSpatialIndex build(StudySnapshot snapshot) {
+        List<Site> sites = new ArrayList<>(snapshot.getSites().size());
+        for (Site site : snapshot.getSites()) {
+            // NaN 坐标会破坏 k-d 树的划分与剪枝
+            if (Double.isFinite(site.getLatitude()) && Double.isFinite(site.getLongitude())) {
+                sites.add(site);
+            }
+        }
+        double[] planar = new double[sites.size() * 2];
+        double[] spherical = new double[sites.size() * 3];
+        for (int i = 0; i < sites.size(); i++) {
+            Site site = sites.get(i);
+            planar[i * 2] = site.getLongitude();
+            planar[i * 2 + 1] = site.getLatitude();
+            toUnitVector(site.getLatitude(), site.getLongitude(), spherical, i * 3);
+        }
+        return new SiteSpatialIndex(sites, new KdTree(planar, 2), new KdTree(spherical, 3));
+    }
+
+    /**
+     * 视口内的站点，按站点编号排序
+     */
+    public List<Site> within(BoundingBox bbox, Predicate<Site> filter) {
+        List<Site> result = new ArrayList<>();
+        if (bbox.crossesAntimeridian()) {
+            collect(bbox.getMinLon(), 180.0, bbox, filter, result);
+            collect(-180.0, bbox.getMaxLon(), bbox, filter, result);
+        } else {
+            collect(bbox.getMinLon(), bbox.getMaxLon(), bbox, filter, result);
+        }
+        result.sort(Comparator.comparing(Site::getNumber, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * 大圆距离不超过 radiusKm 的站点，按距离升序
+     */
+    public List<NearbySiteDTO> nearby(double latitude, double longitude, double radiusKm, Predicate<Site> filter) {
+        double[] query = toUnitVector(latitude, longitude);
+        double chord = 2 * Math.sin(Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI) / 2);
+        double chordSquared = chord * chord;
+        double[] min = new double[3];
+        double[] max = new double[3];
+        for (int d = 0; d < 3; d++) {
+            min[d] = query[d] - chord;
+            max[d] = query[d] + chord;
+        }
+
+        List<NearbySiteDTO> result = new ArrayList<>();
+        spherical.range(min, max, id -> {
+            Site site = sites.get(id);
+            double distanceSquared = chordSquared(query, site);
+            if (distanceSquared <= chordSquared && filter.test(site)) {
+                result.add(toNearby(site, distanceSquared));
+            }
+        });
+        result.sort(Comparator.comparingDouble(NearbySiteDTO::getDistanceKm));
+        return result;
+    }
+
+    /**
+     * 距离最近的 k 个站点，按距离升序
+     */
+    public List<NearbySiteDTO> nearest(double latitude, double longitude, int k, Predicate<Site> filter) {
+        double[] query = toUnitVector(latitude, longitude);
+        int[] ids = spherical.nearest(query, k, id -> filter.test(sites.get(id)));
+        List<NearbySiteDTO> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Site site = sites.get(id);
+            result.add(toNearby(site, chordSquared(query, site)));
+        }
+        return result;
+    }
+
+    // ================ Helpers ================
+
+    private void collect(double minLon, double maxLon, BoundingBox bbox, Predicate<Site> filter, List<Site> result) {
+        planar.range(
+                new double[]{minLon, bbox.getMinLat()},
+                new double[]{maxLon, bbox.getMaxLat()},
+                id -> {
+                    Site site = sites.get(id);
+                    if (filter.test(site)) {
+                        result.add(site);
+                    }
+                });
+    }
+
+    private static NearbySiteDTO toNearby(Site site, double chordSquared) {
+        double angle = 2 * Math.asin(Math.min(1.0, Math.sqrt(chordSquared) / 2));
+        return NearbySiteDTO.builder()
+                .site(site)
+                .distanceKm(angle * EARTH_RADIUS_KM)
+                .build();
+    }
+
+    private static double chordSquared(double[] query, Site site) {
+        double[] point = toUnitVector(site.getLatitude(), site.getLongitude());
+        double dx = point[0] - query[0];
+        double dy = point[1] - query[1];
+        double dz = point[2] - query[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double[] toUnitVector(double latitude, double longitude) {
+        double[] vector = new double[3];
+        toUnitVector(latitude, longitude, vector, 0);
+        return vector;
+    }
+
+    private static void toUnitVector(double latitude, double longitude, double[] target, int offset) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        target[offset] = cosLat * Math.cos(lon);
+        target[offset + 1] = cosLat * Math.sin(lon);
+        target[offset + 2] = Math.sin(lat);
+    }
+}
@@ -0,0 +1,68 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.dto.NearbySiteDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.SnapshotIndexCache;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySnapshotUpdatedEvent;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 站点空间查询服务：视口、半径和最近邻查询，可按状态和国家过滤
+ */
+@Service
+public class SiteSpatialService {
+    public static final int MAX_NEAREST = 1000;
+
+    private final SnapshotIndexCache<SiteSpatialIndex> indexes =
+            new SnapshotIndexCache<>("spatial", SiteSpatialIndex::build);
+
+    public List<Site> findWithin(StudySnapshot snapshot, BoundingBox bbox, String status, String countryId) {
+        return indexes.get(snapshot).within(bbox, filter(status, countryId));
+    }
+
+    public List<NearbySiteDTO> findNearby(StudySnapshot snapshot, double latitude, double longitude,
+                                          double radiusKm, String status, String countryId) {
+        validatePoint(latitude, longitude);
+        if (!(radiusKm > 0)) {
+            throw new IllegalArgumentException("radiusKm must be positive");
+        }
+        return indexes.get(snapshot).nearby(latitude, longitude, radiusKm, filter(status, countryId));
+    }
+
+    public List<NearbySiteDTO> findNearest(StudySnapshot snapshot, double latitude, double longitude,
+                                           int k, String status, String countryId) {
+        validatePoint(latitude, longitude);
+        if (k < 1 || k > MAX_NEAREST) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST);
+        }
+        return indexes.get(snapshot).nearest(latitude, longitude, k, filter(status, countryId));
+    }
+
+    @EventListener
+    public void onSnapshotUpdated(StudySnapshotUpdatedEvent event) {
+        indexes.get(event.getSnapshot());
+    }
+
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        indexes.remove(event.getStudyId());
+    }
+
+    private static Predicate<Site> filter(String status, String countryId) {
+        return site -> (status == null || status.equals(site.getStatus()))
+                && (countryId == null || countryId.equals(site.getCountryId()));
+    }
+
+    private static void validatePoint(double latitude, double longitude) {
+        // 取反的写法使 NaN 同样被拒绝
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException("lat must be within [-90, 90] and lon within [-180, 180]");
+        }
+    }
+}
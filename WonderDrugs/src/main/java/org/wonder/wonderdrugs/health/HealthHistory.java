@@ -0,0 +1,245 @@
+package org.wonder.wonderdrugs.health;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * 单个研究的健康评分历史
+ * 同一研究的所有站点在同一时刻采样，采样时间只保存一份（环形 long 数组）；
+ * 每个站点占用一个槽位，评分（0-100）按 槽位 × 容量 存放在一个 byte 数组中，
+ * 没有对象头和装箱开销，1 万个站点 × 720 次采样约 7 MB
+ */
+final class HealthHistory {
+    static final byte NO_SCORE = -1;
+
+    private static final int MAGIC = 0x57444848; // "WDHH"
+    private static final short FORMAT_VERSION = 1;
+    private static final double DAY_MILLIS = 86_400_000d;
+
+    private final int capacity;
+    private final long[] times;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] siteIds = new String[16];
+    private byte[] scores;
+    // 下一次采样写入的位置和已有采样数
+    private int head;
+    private int count;
+    // 全部站点的趋势斜率，只在新采样时失效
+    private Map<String, Double> slopes;
+    private long slopesWindow;
+
+    HealthHistory(int capacity) {
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.scores = new byte[siteIds.length * capacity];
+    }
+
+    /**
+     * 记录一次采样，未出现在本次采样中的站点记为 {@link #NO_SCORE}
+     */
+    synchronized void record(long time, List<Site> sites, ToIntFunction<Site> score) {
+        int sample = head;
+        for (int slot = 0; slot < slots.size(); slot++) {
+            scores[slot * capacity + sample] = NO_SCORE;
+        }
+        for (Site site : sites) {
+            int slot = slotOf(site.getId());
+            scores[slot * capacity + sample] = (byte) Math.max(0, Math.min(100, score.applyAsInt(site)));
+        }
+        times[sample] = time;
+        head = (head + 1) % capacity;
+        count = Math.min(count + 1, capacity);
+        slopes = null;
+    }
+
+    /**
+     * @return 最近一次采样时间，没有采样时为 Long.MIN_VALUE
+     */
+    synchronized long lastSampleTime() {
+        return count == 0 ? Long.MIN_VALUE : times[(head - 1 + capacity) % capacity];
+    }
+
+    synchronized boolean contains(String siteId) {
+        return slots.containsKey(siteId);
+    }
+
+    /**
+     * @return 按时间升序的采样，跳过站点缺席的采样；站点从未出现时为空
+     */
+    synchronized Samples samples(String siteId, long since) {
+        Integer slot = slots.get(siteId);
+        if (slot == null) {
+            return new Samples(new long[0], new byte[0]);
+        }
+        long[] sampleTimes = new long[count];
+        byte[] sampleScores = new byte[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int sample = (head - count + i + capacity) % capacity;
+            byte score = scores[slot * capacity + sample];
+            if (score != NO_SCORE && times[sample] >= since) {
+                sampleTimes[size] = times[sample];
+                sampleScores[size] = score;
+                size++;
+            }
+        }
+        return new Samples(Arrays.copyOf(sampleTimes, size), Arrays.copyOf(sampleScores, size));
+    }
+
+    /**
+     * 全部站点截至最近一次采样的窗口内斜率（分/天）。评分只在采样时变化，
+     * 结果按采样缓存，读取请求不再逐站点扫描环形数组
+     * @param windowMillis 趋势窗口长度
+     */
+    synchronized Map<String, Double> slopesPerDay(long windowMillis) {
+        if (count == 0) {
+            return Map.of();
+        }
+        if (slopes == null || slopesWindow != windowMillis) {
+            long since = times[(head - 1 + capacity) % capacity] - windowMillis;
+            Map<String, Double> computed = new HashMap<>(slots.size() * 2);
+            for (String siteId : slots.keySet()) {
+                computed.put(siteId, slopePerDay(siteId, since));
+            }
+            slopes = Collections.unmodifiableMap(computed);
+            slopesWindow = windowMillis;
+        }
+        return slopes;
+    }
+
+    /**
+     * 窗口内评分对时间的最小二乘斜率（分/天），直接在环形数组上计算；少于两个采样时为 0
+     */
+    synchronized double slopePerDay(String siteId, long since) {
+        Integer slot = slots.get(siteId);
+        if (slot == null) {
+            return 0;
+        }
+        int base = slot * capacity;
+        int n = 0;
+        double sumX = 0;
+        double sumY = 0;
+        for (int i = 0; i < count; i++) {
+            int sample = (head - count + i + capacity) % capacity;
+            if (scores[base + sample] != NO_SCORE && times[sample] >= since) {
+                sumX += (times[sample] - since) / DAY_MILLIS;
+                sumY += scores[base + sample];
+                n++;
+            }
+        }
+        if (n < 2) {
+            return 0;
+        }
+        double meanX = sumX / n;
+        double meanY = sumY / n;
+        double covariance = 0;
+        double variance = 0;
+        for (int i = 0; i < count; i++) {
+            int sample = (head - count + i + capacity) % capacity;
+            if (scores[base + sample] != NO_SCORE && times[sample] >= since) {
+                double dx = (times[sample] - since) / DAY_MILLIS - meanX;
+                covariance += dx * (scores[base + sample] - meanY);
+                variance += dx * dx;
+            }
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    private int slotOf(String siteId) {
+        Integer slot = slots.get(siteId);
+        if (slot != null) {
+            return slot;
+        }
+        int next = slots.size();
+        if (next == siteIds.length) {
+            siteIds = Arrays.copyOf(siteIds, next * 2);
+            scores = Arrays.copyOf(scores, next * 2 * capacity);
+        }
+        siteIds[next] = siteId;
+        slots.put(siteId, next);
+        // 新站点在此前的采样中都不存在
+        Arrays.fill(scores, next * capacity, (next + 1) * capacity, NO_SCORE);
+        return next;
+    }
+
+    // ================ Persistence ================
+
+    synchronized byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + count * 8 + slots.size() * (count + 24));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(times[(head - count + i + capacity) % capacity]);
+        }
+        out.writeInt(slots.size());
+        for (int slot = 0; slot < slots.size(); slot++) {
+            byte[] id = siteIds[slot].getBytes(StandardCharsets.UTF_8);
+            out.writeShort(id.length);
+            out.write(id);
+            for (int i = 0; i < count; i++) {
+                out.writeByte(scores[slot * capacity + (head - count + i + capacity) % capacity]);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 采样按时间顺序重新放入，容量配置变化时只保留最近的采样
+     */
+    static HealthHistory decode(ByteBuffer buffer, int capacity) {
+        if (buffer.getInt() != MAGIC || buffer.getShort() != FORMAT_VERSION) {
+            throw new IllegalStateException("Not a health history file");
+        }
+        int stored = buffer.getInt();
+        long[] storedTimes = new long[stored];
+        for (int i = 0; i < stored; i++) {
+            storedTimes[i] = buffer.getLong();
+        }
+        int skipped = Math.max(0, stored - capacity);
+
+        HealthHistory history = new HealthHistory(capacity);
+        history.count = stored - skipped;
+        history.head = history.count % capacity;
+        System.arraycopy(storedTimes, skipped, history.times, 0, history.count);
+
+        int slotCount = buffer.getInt();
+        for (int slot = 0; slot < slotCount; slot++) {
+            byte[] id = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(id);
+            int target = history.slotOf(new String(id, StandardCharsets.UTF_8));
+            buffer.position(buffer.position() + skipped);
+            buffer.get(history.scores, target * capacity, history.count);
+        }
+        return history;
+    }
+
+    /**
+     * 一个站点按时间升序的采样
+     */
+    static final class Samples {
+        final long[] times;
+        final byte[] scores;
+
+        private Samples(long[] times, byte[] scores) {
+            this.times = times;
+            this.scores = scores;
+        }
+
+        int size() {
+            return times.length;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package org.wonder.wonderdrugs.health;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.dto.PortfolioHealthDTO;
+import org.wonder.wonderdrugs.dto.SiteHealthDTO;
+import org.wonder.wonderdrugs.dto.StudyHealthDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.model.Study;
+import org.wonder.wonderdrugs.service.SiteHealthScorer;
+import org.wonder.wonderdrugs.service.SiteService;
+import org.wonder.wonderdrugs.sync.SnapshotIndexCache;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySyncService;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * 所有进行中研究的站点健康汇总
+ * 研究快照在 portfolioExecutor 上并发获取（已同步的研究直接从内存返回，其余同时加载的数量受线程数限制）；
+ * 每个研究同一时间只有一个加载任务，超时的请求留下的任务由后续请求复用，Vault 变慢时任务不会随请求数堆积；
+ * 每个研究的评分汇总按快照版本缓存，评分本身在 fork-join 池上并行计算，
+ * 因此重复请求的耗时只取决于研究数量而不是站点数量
+ */
+@Slf4j
+@Service
+public class PortfolioHealthService {
+
+    private final StudySyncService studySyncService;
+    private final SiteService siteService;
+    private final SiteHealthHistoryService siteHealthHistoryService;
+    private final TaskExecutor executor;
+    private final int worstSites;
+    private final Duration timeout;
+    private final Set<String> inactiveStatuses;
+    // 每个研究正在进行的健康计算
+    private final ConcurrentMap<String, CompletableFuture<StudyHealthDTO>> loads = new ConcurrentHashMap<>();
+    private final SnapshotIndexCache<Rollup> rollups = new SnapshotIndexCache<>("health-rollup", this::rollup);
+
+    @Autowired
+    public PortfolioHealthService(StudySyncService studySyncService,
+                                  SiteService siteService,
+                                  SiteHealthHistoryService siteHealthHistoryService,
+                                  @Qualifier("portfolioExecutor") TaskExecutor executor,
+                                  @Value("${vault.portfolio.worst-sites:10}") int worstSites,
+                                  @Value("${vault.portfolio.timeout:PT60S}") Duration timeout,
+                                  @Value("${vault.portfolio.inactive-statuses:Closed,Completed,Canceled,Cancelled,Archived,Withdrawn,Terminated}")
+                                  List<String> inactiveStatuses) {
+        this.studySyncService = studySyncService;
+        this.siteService = siteService;
+        this.siteHealthHistoryService = siteHealthHistoryService;
+        this.executor = executor;
+        this.worstSites = worstSites;
+        this.timeout = timeout;
+        this.inactiveStatuses = new HashSet<>();
+        for (String status : inactiveStatuses) {
+            this.inactiveStatuses.add(normaliseStatus(status));
+        }
+    }
+
+    public PortfolioHealthDTO getPortfolioHealth() {
+        List<Study> studies = studySyncService.getStudies();
+        Map<Study, CompletableFuture<StudyHealthDTO>> futures = new LinkedHashMap<>();
+        for (Study study : studies) {
+            if (study.getId() == null || !isActive(study)) {
+                continue;
+            }
+            futures.put(study, load(study));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Portfolio health timed out after {}, returning partial results", timeout);
+        } catch (ExecutionException e) {
+            // 单个研究的失败在下面逐个处理
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<StudyHealthDTO> results = new ArrayList<>();
+        List<String> incomplete = new ArrayList<>();
+        futures.forEach((study, future) -> {
+            if (future.isDone() && !future.isCompletedExceptionally()) {
+                results.add(future.join());
+                return;
+            }
+            if (future.isCompletedExceptionally()) {
+                future.exceptionally(error -> {
+                    log.warn("Error computing health for study {}: {}", study.getId(), error.getMessage());
+                    return null;
+                });
+            }
+            incomplete.add(study.getId());
+        });
+        return summarise(results, incomplete);
+    }
+
+    /**
+     * @return 研究正在进行的健康计算，没有时提交一个新的
+     */
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        rollups.remove(event.getStudyId());
+    }
+
+    private CompletableFuture<StudyHealthDTO> load(Study study) {
+        CompletableFuture<StudyHealthDTO> existing = loads.get(study.getId());
+        if (existing != null) {
+            return existing;
+        }
+        CompletableFuture<StudyHealthDTO> created = new CompletableFuture<>();
+        existing = loads.putIfAbsent(study.getId(), created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(studyHealth(study));
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    loads.remove(study.getId(), created);
+                }
+            });
+        } catch (RuntimeException e) {
+            loads.remove(study.getId(), created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    /**
+     * 状态为空或不在非活动状态列表中的研究视为进行中；Vault 选项值的 __v/__c 后缀和大小写不影响匹配
+     */
+    private boolean isActive(Study study) {
+        return study.getStatus() == null || !inactiveStatuses.contains(normaliseStatus(study.getStatus()));
+    }
+
+    private static String normaliseStatus(String status) {
+        String value = status.trim().toLowerCase(Locale.ROOT);
+        if (value.endsWith("__v") || value.endsWith("__c")) {
+            value = value.substring(0, value.length() - 3);
+        }
+        return value;
+    }
+
+    private StudyHealthDTO studyHealth(Study study) {
+        StudySnapshot snapshot = studySyncService.getSnapshot(study.getId());
+        Rollup rollup = rollups.get(snapshot);
+        Function<String, String> trends = siteHealthHistoryService.trends(study.getId());
+
+        List<SiteHealthDTO> worst = new ArrayList<>(rollup.worst.size());
+        for (Site site : rollup.worst) {
+            SiteHealthDTO health = siteService.calculateSiteHealth(site, trends);
+            health.setStudyId(study.getId());
+            worst.add(health);
+        }
+        return StudyHealthDTO.builder()
+                .studyId(study.getId())
+                .studyNumber(study.getNumber())
+                .studyName(study.getName())
+                .siteCount(rollup.siteCount)
+                .meanScore(rollup.siteCount == 0 ? 0 : (double) rollup.scoreSum / rollup.siteCount)
+                .distribution(distribution(rollup.good, rollup.fair, rollup.attention))
+                .needsAttention(rollup.attention)
+                .stale(snapshot.isStale())
+                .worstSites(worst)
+                .build();
+    }
+
+    private PortfolioHealthDTO summarise(List<StudyHealthDTO> studies, List<String> incomplete) {
+        int siteCount = 0;
+        double scoreSum = 0;
+        int good = 0;
+        int fair = 0;
+        int attention = 0;
+        List<SiteHealthDTO> worst = new ArrayList<>();
+        for (StudyHealthDTO study : studies) {
+            siteCount += study.getSiteCount();
+            scoreSum += study.getMeanScore() * study.getSiteCount();
+            good += study.getDistribution().get(SiteHealthScorer.STATUS_GOOD);
+            fair += study.getDistribution().get(SiteHealthScorer.STATUS_FAIR);
+            attention += study.getNeedsAttention();
+            worst.addAll(study.getWorstSites());
+        }
+        worst.sort(Comparator.comparingInt(SiteHealthDTO::getHealthScore));
+        studies.sort(Comparator.comparingDouble(StudyHealthDTO::getMeanScore));
+
+        return PortfolioHealthDTO.builder()
+                .studyCount(studies.size())
+                .siteCount(siteCount)
+                .meanScore(siteCount == 0 ? 0 : scoreSum / siteCount)
+                .distribution(distribution(good, fair, attention))
+                .needsAttention(attention)
+                .studies(studies)
+                .worstSites(new ArrayList<>(worst.subList(0, Math.min(worstSites, worst.size()))))
+                .incompleteStudies(incomplete)
+                .build();
+    }
+
+    private static Map<String, Integer> distribution(int good, int fair, int attention) {
+        Map<String, Integer> distribution = new LinkedHashMap<>();
+        distribution.put(SiteHealthScorer.STATUS_GOOD, good);
+        distribution.put(SiteHealthScorer.STATUS_FAIR, fair);
+        distribution.put(SiteHealthScorer.STATUS_ATTENTION, attention);
+        return distribution;
+    }
+
+    /**
+     * 评分在 fork-join 池上并行计算，汇总和选出最差站点只需顺序扫描一次评分数组
+     */
+    private Rollup rollup(StudySnapshot snapshot) {
+        List<Site> sites = snapshot.getSites();
+        int[] scores = sites.parallelStream().mapToInt(SiteHealthScorer::score).toArray();
+
+        Rollup rollup = new Rollup();
+        rollup.siteCount = scores.length;
+        // 大顶堆保留评分最低的 worstSites 个站点
+        PriorityQueue<Integer> worst = new PriorityQueue<>(Math.max(1, worstSites),
+                Comparator.<Integer>comparingInt(i -> scores[i]).reversed());
+        for (int i = 0; i < scores.length; i++) {
+            rollup.scoreSum += scores[i];
+            switch (SiteHealthScorer.status(scores[i])) {
+                case SiteHealthScorer.STATUS_GOOD -> rollup.good++;
+                case SiteHealthScorer.STATUS_FAIR -> rollup.fair++;
+                default -> rollup.attention++;
+            }
+            if (worst.size() < worstSites) {
+                worst.add(i);
+            } else if (worstSites > 0 && scores[i] < scores[worst.peek()]) {
+                worst.poll();
+                worst.add(i);
+            }
+        }
+        List<Integer> order = new ArrayList<>(worst);
+        order.sort(Comparator.comparingInt(i -> scores[i]));
+        for (int index : order) {
+            rollup.worst.add(sites.get(index));
+        }
+        return rollup;
+    }
+
+    private static final class Rollup {
+        private int siteCount;
+        private long scoreSum;
+        private int good;
+        private int fair;
+        private int attention;
+        private final List<Site> worst = new ArrayList<>();
+    }
+}
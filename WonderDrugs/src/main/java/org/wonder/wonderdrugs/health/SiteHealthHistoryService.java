@@ -0,0 +1,156 @@
+package org.wonder.wonderdrugs.health;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.dto.HealthSampleDTO;
+import org.wonder.wonderdrugs.dto.SiteHealthHistoryDTO;
+import org.wonder.wonderdrugs.service.SiteHealthScorer;
+import org.wonder.wonderdrugs.sync.SnapshotFileStore;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySnapshotUpdatedEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 站点健康评分历史
+ * 研究快照刷新时按采样间隔记录每个站点的健康评分，趋势由截至最近一次采样的趋势窗口内评分的最小二乘斜率得出：
+ * 窗口内的预计变化达到阈值为上升/下降，否则为稳定。斜率每次采样后只计算一次。历史随快照一起保存在磁盘上，重启后继续累积
+ */
+@Slf4j
+@Service
+public class SiteHealthHistoryService {
+    public static final String TREND_UP = "上升";
+    public static final String TREND_DOWN = "下降";
+    public static final String TREND_STABLE = "稳定";
+
+    private final SnapshotFileStore fileStore;
+    private final int capacity;
+    private final Duration sampleInterval;
+    private final Duration trendWindow;
+    private final double trendMinChange;
+    private final ConcurrentMap<String, HealthHistory> histories = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SiteHealthHistoryService(SnapshotFileStore fileStore,
+                                    @Value("${vault.health.history-size:720}") int capacity,
+                                    @Value("${vault.health.sample-interval:PT3H}") Duration sampleInterval,
+                                    @Value("${vault.health.trend-window:P14D}") Duration trendWindow,
+                                    @Value("${vault.health.trend-min-change:5}") double trendMinChange) {
+        this.fileStore = fileStore;
+        this.capacity = capacity;
+        this.sampleInterval = sampleInterval;
+        this.trendWindow = trendWindow;
+        this.trendMinChange = trendMinChange;
+    }
+
+    @EventListener
+    public void onSnapshotUpdated(StudySnapshotUpdatedEvent event) {
+        record(event.getSnapshot(), System.currentTimeMillis());
+    }
+
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        histories.remove(event.getStudyId());
+    }
+
+    /**
+     * 距上次采样不足采样间隔时忽略
+     */
+    public void record(StudySnapshot snapshot, long now) {
+        if (!snapshot.isLoaded()) {
+            return;
+        }
+        HealthHistory history = histories.computeIfAbsent(snapshot.getStudyId(), this::load);
+        if (history.lastSampleTime() > now - sampleInterval.toMillis()) {
+            return;
+        }
+        history.record(now, snapshot.getSites(), SiteHealthScorer::score);
+        try {
+            fileStore.saveHealthHistory(snapshot.getStudyId(), history.encode());
+        } catch (IOException e) {
+            log.warn("Error encoding health history for study {}: {}", snapshot.getStudyId(), e.getMessage());
+        }
+        log.debug("Recorded health scores of {} sites for study {}", snapshot.getSites().size(), snapshot.getStudyId());
+    }
+
+    /**
+     * @return 站点ID到趋势的函数，用于批量计算一个研究的站点健康
+     */
+    public Function<String, String> trends(String studyId) {
+        Map<String, Double> slopes = history(studyId).slopesPerDay(trendWindow.toMillis());
+        return siteId -> trend(slopes.getOrDefault(siteId, 0d));
+    }
+
+    /**
+     * @return 站点的完整历史；站点没有任何采样时返回 null
+     */
+    public SiteHealthHistoryDTO getHistory(String studyId, String siteId) {
+        HealthHistory history = history(studyId);
+        if (!history.contains(siteId)) {
+            return null;
+        }
+        HealthHistory.Samples all = history.samples(siteId, Long.MIN_VALUE);
+        double slope = history.slopesPerDay(trendWindow.toMillis()).getOrDefault(siteId, 0d);
+
+        List<HealthSampleDTO> samples = new ArrayList<>(all.size());
+        for (int i = 0; i < all.size(); i++) {
+            samples.add(new HealthSampleDTO(new Date(all.times[i]), all.scores[i]));
+        }
+        return SiteHealthHistoryDTO.builder()
+                .studyId(studyId)
+                .siteId(siteId)
+                .trend(trend(slope))
+                .slopePerDay(slope)
+                .samples(samples)
+                .build();
+    }
+
+    private String trend(double slopePerDay) {
+        double change = slopePerDay * trendWindow.toMillis() / 86_400_000d;
+        if (change >= trendMinChange) {
+            return TREND_UP;
+        } else if (change <= -trendMinChange) {
+            return TREND_DOWN;
+        }
+        return TREND_STABLE;
+    }
+
+    /**
+     * 读取路径只登记磁盘上已有历史的研究，任意研究ID不会在内存中留下空历史
+     */
+    private HealthHistory history(String studyId) {
+        HealthHistory history = histories.get(studyId);
+        if (history != null) {
+            return history;
+        }
+        HealthHistory stored = loadStored(studyId);
+        return stored != null ? histories.computeIfAbsent(studyId, id -> stored) : new HealthHistory(capacity);
+    }
+
+    private HealthHistory load(String studyId) {
+        HealthHistory stored = loadStored(studyId);
+        return stored != null ? stored : new HealthHistory(capacity);
+    }
+
+    private HealthHistory loadStored(String studyId) {
+        ByteBuffer stored = fileStore.readHealthHistory(studyId);
+        if (stored != null) {
+            try {
+                return HealthHistory.decode(stored, capacity);
+            } catch (Exception e) {
+                log.warn("Discarding unreadable health history for study {}: {}", studyId, e.getMessage());
+            }
+        }
+        return null;
+    }
+}
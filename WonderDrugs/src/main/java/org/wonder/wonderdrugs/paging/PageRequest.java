@@ -0,0 +1,64 @@
+package org.wonder.wonderdrugs.paging;
+
+/**
+ * 游标分页请求参数
+ */
+public final class PageRequest {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    public static final String DEFAULT_SORT = "number";
+
+    private final int limit;
+    private final String cursor;
+    private final String sortField;
+    private final boolean descending;
+    private final String fields;
+
+    private PageRequest(int limit, String cursor, String sortField, boolean descending, String fields) {
+        this.limit = limit;
+        this.cursor = cursor;
+        this.sortField = sortField;
+        this.descending = descending;
+        this.fields = fields;
+    }
+
+    /**
+     * @param sort 排序字段，前缀 "-" 表示降序
+     * @param fields 逗号分隔的输出字段
+     * @throws IllegalArgumentException limit 超出范围时抛出
+     */
+    public static PageRequest of(Integer limit, String cursor, String sort, String fields) {
+        int pageSize = limit != null ? limit : DEFAULT_LIMIT;
+        if (pageSize < 1 || pageSize > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        String spec = sort == null || sort.isBlank() ? DEFAULT_SORT : sort.trim();
+        boolean descending = spec.startsWith("-");
+        return new PageRequest(pageSize, cursor == null || cursor.isBlank() ? null : cursor,
+                descending ? spec.substring(1) : spec, descending, fields == null || fields.isBlank() ? null : fields);
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public String getFields() {
+        return fields;
+    }
+
+    String sortSpec() {
+        return descending ? "-" + sortField : sortField;
+    }
+}
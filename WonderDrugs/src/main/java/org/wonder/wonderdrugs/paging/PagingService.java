@@ -0,0 +1,188 @@
+package org.wonder.wonderdrugs.paging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.SnapshotIndexCache;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 快照数据的游标分页
+ * 每种排序的有序视图按快照版本缓存；游标记录上一页最后一行的排序键和ID（keyset 分页），
+ * 翻页时二分定位，数据在两次请求之间变化也不会重复或跳过行。
+ * 结果按请求的字段子集直接写为 JSON
+ *
+ * 响应格式：{"items": [...], "total": n, "nextCursor": "..."}，最后一页不含 nextCursor
+ */
+@Service
+public class PagingService {
+
+    private final ObjectMapper objectMapper;
+    private final SnapshotIndexCache<ConcurrentMap<String, SortedView>> views =
+            new SnapshotIndexCache<>("sorted-view", snapshot -> new ConcurrentHashMap<>());
+
+    @Autowired
+    public PagingService(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return 序列化后的一页 JSON
+     * @throws IllegalArgumentException 排序字段、输出字段或游标无效时抛出
+     */
+    public byte[] page(StudySnapshot snapshot, Projection<Site> projection, PageRequest request) {
+        Projection.Field<Site> sortField = projection.sortField(request.getSortField());
+        List<Projection.Field<Site>> fields = projection.select(request.getFields());
+        SortedView view = views.get(snapshot).computeIfAbsent(projection.getName() + ":" + request.sortSpec(),
+                key -> new SortedView(snapshot.getSites(), projection, sortField, request.isDescending()));
+
+        int from = request.getCursor() == null ? 0 : view.after(decodeCursor(request, sortField));
+        int to = Math.min(view.rows.size(), from + request.getLimit());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 + (to - from) * 32 * fields.size());
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("items");
+            for (int i = from; i < to; i++) {
+                Site row = view.rows.get(i);
+                generator.writeStartObject();
+                for (Projection.Field<Site> field : fields) {
+                    field.writer.write(row, generator);
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("total", view.rows.size());
+            if (to < view.rows.size()) {
+                generator.writeStringField("nextCursor", encodeCursor(request, view.keys[to - 1], view.ids[to - 1]));
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing page", e);
+        }
+        return out.toByteArray();
+    }
+
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        views.remove(event.getStudyId());
+    }
+
+    // ================ Cursor ================
+
+    private String encodeCursor(PageRequest request, Comparable<?> key, String id) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("s", request.sortSpec());
+        node.set("k", objectMapper.valueToTree(key));
+        node.put("i", id);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(node.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Position decodeCursor(PageRequest request, Projection.Field<Site> sortField) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(Base64.getUrlDecoder().decode(request.getCursor()));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (node == null || !request.sortSpec().equals(node.path("s").asText()) || !node.path("i").isTextual()) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort");
+        }
+        JsonNode key = node.path("k");
+        Comparable<?> value = key.isNull() || key.isMissingNode()
+                ? null
+                : (Comparable<?>) objectMapper.convertValue(key, sortField.keyType);
+        return new Position(value, node.path("i").asText());
+    }
+
+    private static final class Position {
+        private final Comparable<?> key;
+        private final String id;
+
+        private Position(Comparable<?> key, String id) {
+            this.key = key;
+            this.id = id;
+        }
+    }
+
+    /**
+     * 按 (排序键, ID) 排好序的行，排序键为 null 的行无论升降序都排在最后
+     */
+    private static final class SortedView {
+        private final List<Site> rows;
+        private final Comparable<?>[] keys;
+        private final String[] ids;
+        private final boolean descending;
+
+        private SortedView(List<Site> sites, Projection<Site> projection,
+                           Projection.Field<Site> sortField, boolean descending) {
+            this.descending = descending;
+            int n = sites.size();
+            Integer[] order = new Integer[n];
+            Comparable<?>[] rawKeys = new Comparable<?>[n];
+            String[] rawIds = new String[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+                rawKeys[i] = sortField.sortKey.apply(sites.get(i));
+                rawIds[i] = projection.id(sites.get(i));
+            }
+            Arrays.sort(order, (a, b) -> compare(rawKeys[a], rawIds[a], rawKeys[b], rawIds[b]));
+
+            List<Site> sorted = new ArrayList<>(n);
+            this.keys = new Comparable<?>[n];
+            this.ids = new String[n];
+            for (int i = 0; i < n; i++) {
+                sorted.add(sites.get(order[i]));
+                keys[i] = rawKeys[order[i]];
+                ids[i] = rawIds[order[i]];
+            }
+            this.rows = Collections.unmodifiableList(sorted);
+        }
+
+        /**
+         * @return 第一个排在游标之后的行的下标
+         */
+        private int after(Position position) {
+            int low = 0;
+            int high = rows.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(keys[mid], ids[mid], position.key, position.id) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private int compare(Comparable<?> keyA, String idA, Comparable<?> keyB, String idB) {
+            int result;
+            if (keyA == null || keyB == null) {
+                result = keyA == null ? (keyB == null ? 0 : 1) : -1;
+            } else {
+                result = ((Comparable) keyA).compareTo(keyB);
+                if (descending) {
+                    result = -result;
+                }
+            }
+            return result != 0 ? result : Objects.compare(idA, idB, Comparator.nullsLast(Comparator.naturalOrder()));
+        }
+    }
+}
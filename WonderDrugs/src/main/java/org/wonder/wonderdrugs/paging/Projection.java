@@ -0,0 +1,165 @@
+package org.wonder.wonderdrugs.paging;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 行对象可输出字段的声明
+ * 每个字段直接从行对象读取值并写入 JsonGenerator，按请求的字段子集输出时不需要先构建完整的 DTO；
+ * 可排序字段同时声明排序键
+ *
+ * @param <T> 行类型
+ */
+public final class Projection<T> {
+
+    /**
+     * 写出单个值；在字段层面，值为 null 时连同字段名一起省略
+     */
+    @FunctionalInterface
+    public interface ValueWriter<V> {
+        void write(V value, JsonGenerator generator) throws IOException;
+    }
+
+    private final String name;
+    private final Function<T, String> id;
+    private final Map<String, Field<T>> fields;
+
+    private Projection(String name, Function<T, String> id, Map<String, Field<T>> fields) {
+        this.name = name;
+        this.id = id;
+        this.fields = fields;
+    }
+
+    public static <T> Builder<T> builder(String name, Function<T, String> id) {
+        return new Builder<>(name, id);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    String id(T row) {
+        return id.apply(row);
+    }
+
+    /**
+     * @param names 逗号分隔的字段名，为空时返回全部字段
+     * @throws IllegalArgumentException 包含未知字段时抛出
+     */
+    List<Field<T>> select(String names) {
+        if (names == null || names.isBlank()) {
+            return List.copyOf(fields.values());
+        }
+        List<Field<T>> selected = new ArrayList<>();
+        for (String fieldName : names.split(",")) {
+            Field<T> field = fields.get(fieldName.trim());
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field '" + fieldName.trim() + "', expected one of " + fields.keySet());
+            }
+            if (!selected.contains(field)) {
+                selected.add(field);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @throws IllegalArgumentException 字段未知或不可排序时抛出
+     */
+    Field<T> sortField(String fieldName) {
+        Field<T> field = fields.get(fieldName);
+        if (field == null || field.sortKey == null) {
+            List<String> sortable = new ArrayList<>();
+            fields.forEach((key, value) -> {
+                if (value.sortKey != null) {
+                    sortable.add(key);
+                }
+            });
+            throw new IllegalArgumentException("Cannot sort by '" + fieldName + "', expected one of " + sortable);
+        }
+        return field;
+    }
+
+    static final class Field<T> {
+        final String name;
+        // 写出字段名和值
+        final ValueWriter<T> writer;
+        final Function<T, ? extends Comparable<?>> sortKey;
+        final Class<?> keyType;
+
+        private Field(String name, ValueWriter<T> writer, Function<T, ? extends Comparable<?>> sortKey, Class<?> keyType) {
+            this.name = name;
+            this.writer = writer;
+            this.sortKey = sortKey;
+            this.keyType = keyType;
+        }
+    }
+
+    public static final class Builder<T> {
+        private final String name;
+        private final Function<T, String> id;
+        private final Map<String, Field<T>> fields = new LinkedHashMap<>();
+
+        private Builder(String name, Function<T, String> id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        public Builder<T> string(String field, Function<T, String> getter, boolean sortable) {
+            return add(field, nonNull(field, getter, (value, generator) -> generator.writeString(value)),
+                    sortable ? getter : null, String.class);
+        }
+
+        public Builder<T> integer(String field, Function<T, Integer> getter, boolean sortable) {
+            return add(field, nonNull(field, getter, (value, generator) -> generator.writeNumber(value)),
+                    sortable ? getter : null, Integer.class);
+        }
+
+        public Builder<T> decimal(String field, ToDoubleFunction<T> getter, boolean sortable) {
+            return add(field, (row, generator) -> generator.writeNumberField(field, getter.applyAsDouble(row)),
+                    sortable ? row -> getter.applyAsDouble(row) : null, Double.class);
+        }
+
+        public Builder<T> date(String field, Function<T, Date> getter, boolean sortable) {
+            return add(field, nonNull(field, getter, (value, generator) -> generator.writeObject(value)),
+                    sortable ? row -> {
+                        Date value = getter.apply(row);
+                        return value != null ? value.getTime() : null;
+                    } : null, Long.class);
+        }
+
+        public Builder<T> strings(String field, Function<T, List<String>> getter) {
+            return add(field, nonNull(field, getter, (values, generator) -> {
+                generator.writeStartArray();
+                for (String value : values) {
+                    generator.writeString(value);
+                }
+                generator.writeEndArray();
+            }), null, null);
+        }
+
+        public Projection<T> build() {
+            return new Projection<>(name, id, Collections.unmodifiableMap(new LinkedHashMap<>(fields)));
+        }
+
+        private Builder<T> add(String field, ValueWriter<T> writer,
+                               Function<T, ? extends Comparable<?>> sortKey, Class<?> keyType) {
+            fields.put(field, new Field<>(field, writer, sortKey, keyType));
+            return this;
+        }
+
+        private static <T, V> ValueWriter<T> nonNull(String field, Function<T, V> getter, ValueWriter<V> writer) {
+            return (row, generator) -> {
+                V value = getter.apply(row);
+                if (value != null) {
+                    generator.writeFieldName(field);
+                    writer.write(value, generator);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.wonder.wonderdrugs.paging;
+
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.service.SiteHealthScorer;
+
+import java.util.Date;
+import java.util.function.Function;
+
+/**
+ * 站点和站点健康两种输出的字段声明，字段名与 Site、SiteHealthDTO 的 JSON 字段一致
+ */
+public final class SiteProjections {
+
+    public static final Projection<Site> SITES = Projection.<Site>builder("sites", Site::getId)
+            .string("id", Site::getId, true)
+            .string("number", Site::getNumber, true)
+            .string("name", Site::getName, true)
+            .string("status", Site::getStatus, true)
+            .string("siteStatus", Site::getSiteStatus, true)
+            .string("statusColor", Site::getStatusColor, false)
+            .string("country", Site::getCountry, true)
+            .string("countryId", Site::getCountryId, false)
+            .string("countryCode", Site::getCountryCode, true)
+            .string("address", Site::getAddress, false)
+            .string("city", Site::getCity, true)
+            .string("state", Site::getState, true)
+            .decimal("latitude", Site::getLatitude, true)
+            .decimal("longitude", Site::getLongitude, true)
+            .string("vaultUrl", Site::getVaultUrl, false)
+            .string("investigatorId", Site::getInvestigatorId, false)
+            .date("plannedGreenlightDate", Site::getPlannedGreenlightDate, true)
+            .date("actualSivDate", Site::getActualSivDate, true)
+            .integer("daysToGreenlight", Site::getDaysToGreenlight, true)
+            .build();
+
+    /**
+     * 站点健康输出
+     * @param trends 站点ID到趋势，见 SiteHealthHistoryService#trends
+     */
+    public static Projection<Site> siteHealth(Function<String, String> trends) {
+        return Projection.<Site>builder("site-health", Site::getId)
+                .string("id", Site::getId, true)
+                .string("name", Site::getName, true)
+                .string("number", Site::getNumber, true)
+                .string("status", Site::getStatus, true)
+                .string("countryId", Site::getCountryId, false)
+                .string("country", Site::getCountry, true)
+                .integer("healthScore", SiteHealthScorer::score, true)
+                .string("healthStatus", site -> SiteHealthScorer.status(SiteHealthScorer.score(site)), true)
+                .string("trend", site -> trends.apply(site.getId()), false)
+                .strings("issues", site -> SiteHealthScorer.issues(site, SiteHealthScorer.score(site)))
+                .date("lastUpdated", site -> new Date(), false)
+                .string("vaultUrl", Site::getVaultUrl, false)
+                .build();
+    }
+
+    private SiteProjections() {
+    }
+}
@@ -0,0 +1,194 @@
+package org.wonder.wonderdrugs.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.cache.ReferenceDataCache;
+import org.wonder.wonderdrugs.dto.CacheStatsDTO;
+import org.wonder.wonderdrugs.model.Country;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * country__v 批量加载服务
+ * 将任意数量的国家ID拆分为若干 {@code WHERE id CONTAINS (...)} 查询，避免每个国家一次 Vault 调用；
+ * 国家元数据几乎不变，结果放入有界的参考数据缓存，并在过期前由后台任务提前刷新
+ */
+@Slf4j
+@Service
+public class CountryService {
+    // ================ Constants ================
+    // Vault 对单条 VQL 的长度有限制，按 ID 数量和查询长度双重约束切分
+    private static final int MAX_IDS_PER_QUERY = 200;
+    private static final int MAX_QUERY_LENGTH = 8000;
+
+    private static final String COUNTRY_QUERY = """
+            SELECT id, name__v, code__sys, abbreviation__c, link__sys
+            FROM country__v
+            WHERE id CONTAINS (%s)
+            """;
+
+    private static final RowMapper<Country> COUNTRY_MAPPER = RowMapper.builder(Country::new)
+            .text("id", Country::setId)
+            .text("name__v", Country::setName)
+            .text("code__sys", Country::setCode)
+            .text("abbreviation__c", Country::setAbbreviation)
+            .build();
+
+    private final VaultService vaultService;
+    private final ReferenceDataCache<String, Country> countryCache;
+    private final Duration refreshAfter;
+
+    @Autowired
+    public CountryService(VaultService vaultService,
+                          @Value("${vault.cache.country.max-size:2000}") int maxSize,
+                          @Value("${vault.cache.country.ttl:PT24H}") Duration ttl,
+                          @Value("${vault.cache.country.refresh-after:PT12H}") Duration refreshAfter) {
+        this.vaultService = vaultService;
+        this.countryCache = new ReferenceDataCache<>("country", maxSize, ttl);
+        this.refreshAfter = refreshAfter;
+    }
+
+    /**
+     * 批量获取国家信息，优先读取缓存，仅对未命中的ID查询 Vault
+     * @param countryIds 国家ID集合
+     * @return 国家ID到国家对象副本的映射，未找到的ID不会出现在结果中
+     */
+    public Map<String, Country> getCountries(Collection<String> countryIds) {
+        Map<String, Country> countryMap = new HashMap<>();
+        if (countryIds == null || countryIds.isEmpty()) {
+            return countryMap;
+        }
+
+        Map<String, Country> cached = countryCache.getAll(countryIds);
+        cached.forEach((id, country) -> countryMap.put(id, copyOf(country)));
+
+        Set<String> missing = new HashSet<>(countryIds);
+        missing.removeAll(cached.keySet());
+        if (!missing.isEmpty()) {
+            Map<String, Country> loaded = loadCountries(missing);
+            countryCache.putAll(loaded);
+            loaded.forEach((id, country) -> countryMap.put(id, copyOf(country)));
+        }
+        return countryMap;
+    }
+
+    /**
+     * 在条目过期前后台刷新，使国家数据不出现在请求的关键路径上
+     */
+    @Scheduled(fixedDelayString = "${vault.cache.country.refresh-interval:PT30M}",
+            initialDelayString = "${vault.cache.country.refresh-interval:PT30M}")
+    public void refreshAgingEntries() {
+        Set<String> aging = countryCache.keysOlderThan(refreshAfter);
+        if (aging.isEmpty() || !vaultService.hasActiveSession()) {
+            return;
+        }
+        log.debug("Refreshing {} cached countries", aging.size());
+        countryCache.putAll(loadCountries(aging));
+    }
+
+    public CacheStatsDTO getCacheStats() {
+        return countryCache.stats();
+    }
+
+    public void invalidateCache() {
+        log.info("Invalidating country cache");
+        countryCache.invalidateAll();
+    }
+
+    /**
+     * 各分片查询相互独立，并发发出，耗时接近最慢的单个分片
+     */
+    private Map<String, Country> loadCountries(Collection<String> countryIds) {
+        List<List<String>> chunks = chunkIds(countryIds);
+        List<CompletableFuture<JsonNode>> futures = chunks.stream()
+                .map(chunk -> vaultService.executeQueryAsync(COUNTRY_QUERY.formatted(toInList(chunk))))
+                .collect(Collectors.toList());
+
+        Map<String, Country> countryMap = new HashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                for (JsonNode node : futures.get(i).join()) {
+                    Country country = createCountry(node);
+                    countryMap.put(country.getId(), country);
+                }
+            } catch (Exception e) {
+                log.warn("Error fetching country batch of {} IDs: {}", chunks.get(i).size(), e.getMessage());
+            }
+        }
+
+        log.info("Fetched data for {} of {} countries in {} queries",
+                countryMap.size(), countryIds.size(), chunks.size());
+        return countryMap;
+    }
+
+    private List<List<String>> chunkIds(Collection<String> countryIds) {
+        int budget = MAX_QUERY_LENGTH - COUNTRY_QUERY.length();
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int length = 0;
+
+        for (String id : new LinkedHashSet<>(countryIds)) {
+            if (id == null || id.isBlank()) {
+                continue;
+            }
+            // 'id', 的长度
+            int idLength = id.length() + 4;
+            if (!current.isEmpty() && (current.size() >= MAX_IDS_PER_QUERY || length + idLength > budget)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                length = 0;
+            }
+            current.add(id);
+            length += idLength;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    private String toInList(List<String> ids) {
+        StringJoiner joiner = new StringJoiner(",");
+        for (String id : ids) {
+            joiner.add("'" + id.replace("'", "\\'") + "'");
+        }
+        return joiner.toString();
+    }
+
+    private Country createCountry(JsonNode node) {
+        Country country = COUNTRY_MAPPER.map(node);
+        if (country.getName() == null) {
+            country.setName("Unknown Country");
+        }
+        if (country.getCode() == null) {
+            country.setCode("??");
+        }
+        country.setVaultUrl(constructVaultUrl(country.getId()));
+        return country;
+    }
+
+    // ================ Utility Methods ================
+    private Country copyOf(Country source) {
+        Country country = new Country();
+        country.setId(source.getId());
+        country.setName(source.getName());
+        country.setCode(source.getCode());
+        country.setAbbreviation(source.getAbbreviation());
+        country.setStatus(source.getStatus());
+        country.setVaultUrl(source.getVaultUrl());
+        return country;
+    }
+
+    private String constructVaultUrl(String id) {
+        String baseUrl = vaultService.getVaultWebUrl();
+        String prefix = id.length() >= 3 ? id.substring(0, 3) : "00C";
+        return baseUrl + "/#v/" + prefix + "/" + id;
+    }
+}
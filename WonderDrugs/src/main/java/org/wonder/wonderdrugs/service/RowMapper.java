@@ -0,0 +1,177 @@
+package org.wonder.wonderdrugs.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 声明式的 VQL 行绑定
+ * 字段绑定在构建时登记到按字段名索引的表中；映射时按 token 顺序遍历行中的字段一次，
+ * 每个字段只查表一次，值直接从解析器读出写入目标对象，未登记的字段被跳过，不构建 JsonNode 树。
+ * 构建后不可变，可在多个线程间共享
+ *
+ * @param <T> 目标类型
+ */
+public final class RowMapper<T> {
+    private static final Logger logger = LoggerFactory.getLogger(RowMapper.class);
+
+    @FunctionalInterface
+    private interface FieldReader<T> {
+        void read(T target, JsonParser parser, JsonToken token) throws IOException;
+    }
+
+    private final Supplier<T> factory;
+    private final Map<String, FieldReader<T>> fields;
+
+    private RowMapper(Supplier<T> factory, Map<String, FieldReader<T>> fields) {
+        this.factory = factory;
+        this.fields = fields;
+    }
+
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * 从解析器读取一行；调用时解析器位于行对象的 START_OBJECT，返回时位于对应的 END_OBJECT
+     */
+    public T read(JsonParser parser) throws IOException {
+        T target = factory.get();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            FieldReader<T> reader = fields.get(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+            if (reader == null || token == JsonToken.VALUE_NULL) {
+                parser.skipChildren();
+            } else {
+                reader.read(target, parser, token);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 映射已经解析为树的行（如 executeQuery 的结果）
+     */
+    public T map(JsonNode row) {
+        try (JsonParser parser = row.traverse()) {
+            parser.nextToken();
+            return read(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error mapping query row", e);
+        }
+    }
+
+    public static final class Builder<T> {
+        private final Supplier<T> factory;
+        private final Map<String, FieldReader<T>> fields = new HashMap<>();
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * 文本字段；数字等标量按文本读取
+         */
+        public Builder<T> text(String field, BiConsumer<T, String> setter) {
+            return add(field, (target, parser, token) -> {
+                if (token.isScalarValue()) {
+                    setter.accept(target, parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            });
+        }
+
+        /**
+         * picklist 等数组字段，取第一个元素的文本
+         */
+        public Builder<T> first(String field, BiConsumer<T, String> setter) {
+            return add(field, (target, parser, token) -> {
+                if (token != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    return;
+                }
+                JsonToken element = parser.nextToken();
+                if (element == JsonToken.END_ARRAY) {
+                    return;
+                }
+                if (element.isScalarValue() && element != JsonToken.VALUE_NULL) {
+                    setter.accept(target, parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                }
+            });
+        }
+
+        /**
+         * 整数字段；文本形式的数字同样接受，无法解析时为 0
+         */
+        public Builder<T> integer(String field, BiConsumer<T, Integer> setter) {
+            return add(field, (target, parser, token) -> {
+                if (token.isScalarValue()) {
+                    setter.accept(target, parser.getValueAsInt());
+                } else {
+                    parser.skipChildren();
+                }
+            });
+        }
+
+        /**
+         * 小数字段；文本形式的数字同样接受，无法解析时为 0
+         */
+        public Builder<T> decimal(String field, ObjDoubleConsumer<T> setter) {
+            return add(field, (target, parser, token) -> {
+                if (token.isScalarValue()) {
+                    setter.accept(target, parser.getValueAsDouble());
+                } else {
+                    parser.skipChildren();
+                }
+            });
+        }
+
+        /**
+         * yyyy-MM-dd 日期字段（带时间部分时只取日期），按服务器时区的零点转换；格式错误时忽略该字段
+         */
+        public Builder<T> date(String field, BiConsumer<T, Date> setter) {
+            return add(field, (target, parser, token) -> {
+                if (token != JsonToken.VALUE_STRING) {
+                    parser.skipChildren();
+                    return;
+                }
+                String text = parser.getText();
+                try {
+                    LocalDate date = LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text);
+                    setter.accept(target, Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+                } catch (DateTimeParseException e) {
+                    logger.warn("Ignoring invalid date '{}' in field {}", text, field);
+                }
+            });
+        }
+
+        public RowMapper<T> build() {
+            return new RowMapper<>(factory, Map.copyOf(fields));
+        }
+
+        private Builder<T> add(String field, FieldReader<T> reader) {
+            fields.put(field, reader);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.wonder.wonderdrugs.service;
+
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 站点健康评分规则
+ * 只依赖站点本身的字段，可以在不构建 SiteHealthDTO 的情况下单独计算某一项
+ */
+public final class SiteHealthScorer {
+    public static final String STATUS_GOOD = "良好";
+    public static final String STATUS_FAIR = "一般";
+    public static final String STATUS_ATTENTION = "需关注";
+    private SiteHealthScorer() {
+    }
+
+    public static int score(Site site) {
+        // 基础分数
+        int baseScore = 50;
+
+        // 根据站点状态调整分数
+        if ("active__v".equals(site.getStatus())) {
+            baseScore += 30;
+        } else if ("completed__v".equals(site.getStatus())) {
+            baseScore += 40;
+        } else if ("on_hold__v".equals(site.getStatus())) {
+            baseScore -= 10;
+        } else if ("suspended__v".equals(site.getStatus())) {
+            baseScore -= 20;
+        } else if ("terminated__v".equals(site.getStatus())) {
+            baseScore -= 30;
+        }
+
+        // 根据其他因素调整分数
+        if (site.getDaysToGreenlight() != null) {
+            if (site.getDaysToGreenlight() <= 30) {
+                baseScore += 10;
+            } else if (site.getDaysToGreenlight() > 60) {
+                baseScore -= 10;
+            }
+        }
+
+        // 确保分数在0-100范围内
+        return Math.max(0, Math.min(100, baseScore));
+    }
+
+    public static String status(int healthScore) {
+        if (healthScore >= 80) {
+            return STATUS_GOOD;
+        } else if (healthScore >= 60) {
+            return STATUS_FAIR;
+        }
+        return STATUS_ATTENTION;
+    }
+
+    public static List<String> issues(Site site, int healthScore) {
+        List<String> issues = new ArrayList<>();
+
+        // 根据健康分数和站点状态识别问题
+        if (healthScore < 60) {
+            issues.add("健康指数低");
+        }
+
+        if ("on_hold__v".equals(site.getStatus())) {
+            issues.add("站点处于搁置状态");
+        } else if ("suspended__v".equals(site.getStatus())) {
+            issues.add("站点已暂停");
+        } else if ("terminated__v".equals(site.getStatus())) {
+            issues.add("站点已终止");
+        }
+
+        if (site.getDaysToGreenlight() != null && site.getDaysToGreenlight() > 60) {
+            issues.add("启动时间过长");
+        }
+
+        // 如果没有问题，添加一个正面评价
+        if (issues.isEmpty()) {
+            issues.add("站点运行良好");
+        }
+
+        return issues;
+    }
+}
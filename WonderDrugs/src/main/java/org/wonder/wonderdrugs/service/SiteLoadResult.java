@@ -0,0 +1,42 @@
+package org.wonder.wonderdrugs.service;
+
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一次站点加载（全量或增量）的结果
+ */
+public class SiteLoadResult {
+    private final List<Site> sites;
+    private final Set<String> skippedIds;
+    private final String maxModifiedDate;
+
+    public SiteLoadResult(List<Site> sites, Set<String> skippedIds, String maxModifiedDate) {
+        this.sites = sites;
+        this.skippedIds = skippedIds;
+        this.maxModifiedDate = maxModifiedDate;
+    }
+
+    /**
+     * @return 带坐标的站点
+     */
+    public List<Site> getSites() {
+        return sites;
+    }
+
+    /**
+     * @return 因缺少坐标等原因未能转换为 Site 的记录ID；增量合并时应从已有集合中移除
+     */
+    public Set<String> getSkippedIds() {
+        return skippedIds;
+    }
+
+    /**
+     * @return 本次返回记录中最大的 modified_date__v（Vault 原始 UTC 字符串），没有记录时为 null
+     */
+    public String getMaxModifiedDate() {
+        return maxModifiedDate;
+    }
+}
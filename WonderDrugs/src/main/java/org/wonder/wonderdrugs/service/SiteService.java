@@ -5,351 +5,262 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.wonder.wonderdrugs.dto.SiteHealthDTO;
+import org.wonder.wonderdrugs.health.SiteHealthHistoryService;
 import org.wonder.wonderdrugs.model.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SiteService {
     private final VaultService vaultService;
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-
-    // ================ Constants ================
-    private static final String DEFAULT_COLOR = "#CCCCCC";
-    private static final Map<String, String> DEFAULT_COLORS = Map.of(
-            SiteStatus.ACTIVE.getValue(), "#4CAF50",     // Green
-            SiteStatus.INACTIVE.getValue(), "#F44336",   // Red
-            SiteStatus.ON_HOLD.getValue(), "#FF9800",    // Orange
-            SiteStatus.COMPLETED.getValue(), "#2196F3",  // Blue
-            SiteStatus.SUSPENDED.getValue(), "#FFC107",  // Yellow
-            SiteStatus.TERMINATED.getValue(), "#9C27B0"  // Purple
-    );
+    private final CountryService countryService;
+    private final StatusColorService statusColorService;
+    private final SiteHealthHistoryService siteHealthHistoryService;
+
+    private static final RowMapper<SiteRow> SITE_ROW_MAPPER = RowMapper.builder(SiteRow::new)
+            .text("id", (row, value) -> row.site.setId(value))
+            .text("name__v", (row, value) -> row.site.setNumber(value))
+            .text("site_name__v", (row, value) -> row.site.setName(value))
+            .first("site_status__v", (row, value) -> row.site.setSiteStatus(value))
+            .first("status__v", (row, value) -> row.site.setStatus(value))
+            .decimal("latitude__c", (row, value) -> row.site.setLatitude(value))
+            .decimal("longitude__c", (row, value) -> row.site.setLongitude(value))
+            .text("principal_investigator__v", (row, value) -> row.site.setInvestigatorId(value))
+            .date("planned_greenlight_date__v", (row, value) -> row.site.setPlannedGreenlightDate(value))
+            .date("actual_siv__v", (row, value) -> row.site.setActualSivDate(value))
+            .integer("days_to_greenlight__v", (row, value) -> row.site.setDaysToGreenlight(value))
+            .text("country__v", (row, value) -> row.site.setCountryId(value))
+            .text("modified_date__v", (row, value) -> row.modifiedDate = value)
+            .build();
 
     // ================ Site Methods ================
-    public List<Site> getSites(String studyId) {
-        log.info("Fetching sites for study: {}", studyId);
-
-        try {
-            JsonNode siteData = fetchSiteData(studyId);
-            Map<String, Map<String, String>> countryData = fetchCountryData(collectCountryIds(siteData));
-            Map<String, String> statusColors = getStatusColors();
-
-            return processSiteData(siteData, countryData, statusColors);
-        } catch (Exception e) {
-            log.error("Error fetching sites: {}", e.getMessage(), e);
-            return Collections.emptyList();
-        }
-    }
-
-    private Map<String, Map<String, String>> fetchCountryData(Set<String> countryIds) {
-        Map<String, Map<String, String>> countryData = new HashMap<>();
-
-        if (countryIds.isEmpty()) {
-            return countryData;
+    /**
+     * 加载站点及其 modified_date__v 高水位
+     * @param modifiedSince 为 null 时全量加载，否则只加载 modified_date__v 不早于该时间的站点
+     */
+    public SiteLoadResult loadSiteData(String studyId, String modifiedSince) {
+        if (modifiedSince == null) {
+            log.info("Fetching sites for study: {}", studyId);
+        } else {
+            log.debug("Fetching sites for study {} modified since {}", studyId, modifiedSince);
         }
 
-        for (String countryId : countryIds) {
-            String query = """
-            SELECT id, name__v, code__sys 
-            FROM country__v 
-            WHERE id = '%s'
-            """.formatted(countryId);
-
-            try {
-                JsonNode countryNodes = vaultService.executeQuery(query);
-                if (countryNodes.size() > 0) {
-                    JsonNode node = countryNodes.get(0);
-                    Map<String, String> countryInfo = new HashMap<>();
-                    countryInfo.put("name__v", getNodeText(node, "name__v"));
-                    countryInfo.put("code__sys", getNodeText(node, "code__sys"));
-                    countryData.put(countryId, countryInfo);
-                    log.debug("Fetched country info for ID {}: {}", countryId, countryInfo);
-                }
-            } catch (Exception e) {
-                log.warn("Error fetching country {}: {}", countryId, e.getMessage());
-            }
+        SiteLoadResult result = fetchSites(studyId, modifiedSince, getStatusColors());
+        if (!result.getSites().isEmpty()) {
+            Map<String, Country> countryData = countryService.getCountries(collectCountryIds(result.getSites()));
+            result.getSites().forEach(site -> setCountryInfo(site, countryData));
         }
-
-        log.info("Fetched data for {} countries", countryData.size());
-        return countryData;
+        return result;
     }
 
-
-    private JsonNode fetchSiteData(String studyId) {
+    /**
+     * 流式读取站点记录，每行解析后立即转换为 Site，不保留整个响应
+     */
+    private SiteLoadResult fetchSites(String studyId, String modifiedSince, Map<String, String> statusColors) {
         String query = """
             SELECT id, name__v, site_name__v, site_status__v, status__v,
                    latitude__c, longitude__c, link__sys,
                    principal_investigator__v, planned_greenlight_date__v,
-                   actual_siv__v, days_to_greenlight__v, country__v
+                   actual_siv__v, days_to_greenlight__v, country__v, modified_date__v
             FROM site__v
             WHERE study__v = '%s'
             """.formatted(studyId);
-        return vaultService.executeQuery(query);
-    }
-
-    private Set<String> collectCountryIds(JsonNode siteData) {
-        return StreamSupport.stream(siteData.spliterator(), false)
-                .map(node -> getNodeText(node, "country__v"))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-    }
+        if (modifiedSince != null) {
+            // 使用 >= 避免遗漏与高水位同一时刻修改的记录，重复记录在合并时按ID覆盖
+            query = query.strip() + " AND modified_date__v >= '%s'".formatted(modifiedSince);
+        }
 
-    private List<Site> processSiteData(JsonNode siteData,
-                                       Map<String, Map<String, String>> countryData,
-                                       Map<String, String> statusColors) {
         List<Site> sites = new ArrayList<>();
-        int sitesWithCoordinates = 0;
-        int sitesWithoutCoordinates = 0;
+        Set<String> skippedIds = new HashSet<>();
+        String[] maxModifiedDate = {null};
+        vaultService.streamQuery(query, SITE_ROW_MAPPER, row -> {
+            String modifiedDate = row.modifiedDate;
+            // Vault 返回统一格式的 UTC 时间字符串，可直接按字典序比较
+            if (modifiedDate != null && (maxModifiedDate[0] == null || modifiedDate.compareTo(maxModifiedDate[0]) > 0)) {
+                maxModifiedDate[0] = modifiedDate;
+            }
 
-        for (JsonNode node : siteData) {
-            Site site = createSite(node, countryData, statusColors);
+            Site site = completeSite(row, statusColors);
             if (site != null) {
                 sites.add(site);
-                sitesWithCoordinates++;
-            } else {
-                sitesWithoutCoordinates++;
+            } else if (row.site.getId() != null) {
+                skippedIds.add(row.site.getId());
             }
-        }
+        });
 
         log.info("Processed sites - Total: {}, With coordinates: {}, Without coordinates: {}",
-                siteData.size(), sitesWithCoordinates, sitesWithoutCoordinates);
-        return sites;
+                sites.size() + skippedIds.size(), sites.size(), skippedIds.size());
+        return new SiteLoadResult(sites, skippedIds, maxModifiedDate[0]);
     }
 
-    private Site createSite(JsonNode node,
-                            Map<String, Map<String, String>> countryData,
-                            Map<String, String> statusColors) {
-        try {
-            Site site = new Site();
-
-            // Basic info
-            site.setId(getNodeText(node, "id"));
-            site.setNumber(getNodeText(node, "name__v"));
-            site.setName(getNodeText(node, "site_name__v", getNodeText(node, "name__v")));
-
-            // Status and color
-            String siteStatus = getFirstArrayElement(node, "site_status__v");
-            if (siteStatus != null) {
-                site.setSiteStatus(siteStatus);
-                site.setStatusColor(statusColors.getOrDefault(siteStatus, DEFAULT_COLOR));
-            }
-            site.setStatus(getFirstArrayElement(node, "status__v"));
-
-            // Country info
-            setCountryInfo(site, node, countryData);
-
-            // Coordinates
-            if (!setCoordinates(site, node)) {
-                return null;
-            }
+    private Set<String> collectCountryIds(List<Site> sites) {
+        return sites.stream()
+                .map(Site::getCountryId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
 
-            // Dates
-            setDates(site, node);
+    /**
+     * 补齐映射之外的派生字段；没有坐标的站点无法在地图上显示，返回 null
+     */
+    private Site completeSite(SiteRow row, Map<String, String> statusColors) {
+        Site site = row.site;
+        if (Double.isNaN(site.getLatitude()) || Double.isNaN(site.getLongitude())) {
+            return null;
+        }
+        if (site.getName() == null) {
+            site.setName(site.getNumber());
+        }
+        if (site.getSiteStatus() != null) {
+            site.setStatusColor(statusColors.getOrDefault(site.getSiteStatus(), StatusColorService.DEFAULT_COLOR));
+        }
+        site.setVaultUrl(constructVaultUrl(null, "site", site.getId()));
+        return site;
+    }
 
-            // Additional info
-            site.setDaysToGreenlight(getNodeInt(node, "days_to_greenlight__v"));
-            site.setInvestigatorId(getNodeText(node, "principal_investigator__v"));
-            site.setVaultUrl(constructVaultUrl(node, "site", site.getId()));
+    /**
+     * 一行 site__v 记录；坐标初始为 NaN 以区分缺失和 0
+     */
+    private static final class SiteRow {
+        private final Site site = new Site();
+        private String modifiedDate;
 
-            return site;
-        } catch (Exception e) {
-            log.warn("Error creating site from node: {}", e.getMessage());
-            return null;
+        private SiteRow() {
+            site.setLatitude(Double.NaN);
+            site.setLongitude(Double.NaN);
         }
     }
 
     // ================ Country Methods ================
-    public List<Country> getCountries(String studyId) {
+    /**
+     * 立即并发发出国家相关的两个独立查询（站点国家、study_country__v），
+     * 返回的 Supplier 在调用时等待结果并组装国家列表，调用方可以在此期间进行其他加载
+     */
+    public Supplier<List<Country>> startLoadCountries(String studyId) {
         log.info("Fetching countries for study: {}", studyId);
 
-        try {
-            Set<String> countryIds = fetchStudyCountryIds(studyId);
+        CompletableFuture<JsonNode> studyCountries = fetchStudyCountriesAsync(studyId);
+        CompletableFuture<JsonNode> siteCountries = fetchSiteCountriesAsync(studyId);
+
+        return () -> {
+            Set<String> countryIds = collectCountryIds(await(siteCountries));
             if (countryIds.isEmpty()) {
                 return Collections.emptyList();
             }
 
-            Map<String, Country> countryMap = fetchCountryDetails(countryIds);
-            updateCountryStatuses(countryMap, studyId);
+            Map<String, Country> countryMap = countryService.getCountries(countryIds);
+            updateCountryStatuses(countryMap, countryIds, studyCountries, studyId);
 
             return new ArrayList<>(countryMap.values());
-        } catch (Exception e) {
-            log.error("Error fetching countries: {}", e.getMessage(), e);
-            return Collections.emptyList();
-        }
+        };
     }
 
-    private Set<String> fetchStudyCountryIds(String studyId) {
+    private CompletableFuture<JsonNode> fetchSiteCountriesAsync(String studyId) {
         String query = "SELECT country__v FROM site__v WHERE study__v = '%s'".formatted(studyId);
-        JsonNode nodes = vaultService.executeQuery(query);
-
-        return StreamSupport.stream(nodes.spliterator(), false)
-                .map(node -> getNodeText(node, "country__v"))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        return vaultService.executeQueryAsync(query);
     }
 
-    private Map<String, Country> fetchCountryDetails(Set<String> countryIds) {
-        Map<String, Country> countryMap = new HashMap<>();
-
-        for (String countryId : countryIds) {
-            String query = """
-                SELECT id, name__v, code__sys, abbreviation__c, link__sys
-                FROM country__v
-                WHERE id = '%s'
-                """.formatted(countryId);
-
-            try {
-                JsonNode nodes = vaultService.executeQuery(query);
-                if (nodes.size() > 0) {
-                    Country country = createCountry(nodes.get(0));
-                    countryMap.put(country.getId(), country);
-                }
-            } catch (Exception e) {
-                log.warn("Error fetching country details for ID {}: {}", countryId, e.getMessage());
+    private Set<String> collectCountryIds(JsonNode nodes) {
+        Set<String> countryIds = new HashSet<>();
+        for (JsonNode node : nodes) {
+            String countryId = getNodeText(node, "country__v");
+            if (countryId != null) {
+                countryIds.add(countryId);
             }
         }
-        return countryMap;
+        return countryIds;
     }
 
-    private Country createCountry(JsonNode node) {
-        Country country = new Country();
-        country.setId(getNodeText(node, "id"));
-        country.setName(getNodeText(node, "name__v", "Unknown Country"));
-        country.setCode(getNodeText(node, "code__sys", "??"));
-        country.setAbbreviation(getNodeText(node, "abbreviation__c"));
-        country.setVaultUrl(constructVaultUrl(node, "country", country.getId()));
-        return country;
+    /**
+     * 一次查询取回该研究的全部 study_country__v 记录，并通过 country__vr 关系带出国家名称和代码
+     */
+    private CompletableFuture<JsonNode> fetchStudyCountriesAsync(String studyId) {
+        String query = """
+            SELECT country__v, status__v, country__vr.name__v, country__vr.code__sys
+            FROM study_country__v
+            WHERE study__v = '%s'
+            """.formatted(studyId);
+        return vaultService.executeQueryAsync(query);
     }
 
-    private void updateCountryStatuses(Map<String, Country> countryMap, String studyId) {
-        for (String countryId : countryMap.keySet()) {
-            String query = """
-                SELECT status__v
-                FROM study_country__v
-                WHERE study__v = '%s' AND country__v = '%s'
-                """.formatted(studyId, countryId);
-
-            try {
-                JsonNode nodes = vaultService.executeQuery(query);
-                if (nodes.size() > 0) {
-                    String status = getFirstArrayElement(nodes.get(0), "status__v");
-                    countryMap.get(countryId).setStatus(status);
+    /**
+     * 单次遍历写入国家状态；批量查询未能返回的国家用关联字段补齐
+     */
+    private void updateCountryStatuses(Map<String, Country> countryMap, Set<String> countryIds,
+                                       CompletableFuture<JsonNode> studyCountries, String studyId) {
+        try {
+            JsonNode nodes = studyCountries.join();
+            for (JsonNode node : nodes) {
+                String countryId = getNodeText(node, "country__v");
+                if (countryId == null || !countryIds.contains(countryId)) {
+                    continue;
                 }
-            } catch (Exception e) {
-                log.warn("Error fetching status for country {}: {}", countryId, e.getMessage());
+
+                Country country = countryMap.computeIfAbsent(countryId, id -> {
+                    Country joined = new Country();
+                    joined.setId(id);
+                    joined.setName(getNodeText(node, "country__vr.name__v", "Unknown Country"));
+                    joined.setCode(getNodeText(node, "country__vr.code__sys", "??"));
+                    joined.setVaultUrl(constructVaultUrl(node, "country", id));
+                    return joined;
+                });
+                country.setStatus(getFirstArrayElement(node, "status__v"));
             }
+        } catch (Exception e) {
+            log.warn("Error fetching study country statuses for study {}: {}", studyId, e.getMessage());
         }
     }
 
     // ================ Status Color Methods ================
     public Map<String, String> getStatusColors() {
-        try {
-            String query = "SELECT site_status__c, status_color__c FROM site_status_configuration__c";
-            JsonNode colorData = vaultService.executeQuery(query);
-
-            Map<String, String> colors = new HashMap<>(DEFAULT_COLORS);
-            StreamSupport.stream(colorData.spliterator(), false)
-                    .forEach(node -> {
-                        String status = getNodeText(node, "site_status__c");
-                        String color = getNodeText(node, "status_color__c");
-                        if (status != null && color != null) {
-                            colors.put(status, color);
-                        }
-                    });
-            return colors;
-        } catch (Exception e) {
-            log.error("Error fetching status colors", e);
-            return new HashMap<>(DEFAULT_COLORS);
-        }
+        return statusColorService.getColors();
+    }
+
+    public long getStatusColorsHash() {
+        return statusColorService.getColorsHash();
     }
 
     public List<StatusColor> getAllStatusColors() {
+        return statusColorService.getActiveStatusColors();
+    }
+
+    // ================ Utility Methods ================
+    private <T> T await(CompletableFuture<T> future) {
         try {
-            String query = """
-                SELECT name__v, site_status__c, status_color__c
-                FROM site_status_configuration__c
-                WHERE status__v = 'ACTIVE'
-                """;
-            JsonNode colorData = vaultService.executeQuery(query);
-
-            List<StatusColor> statusColors = StreamSupport.stream(colorData.spliterator(), false)
-                    .map(this::createStatusColor)
-                    .collect(Collectors.toList());
-
-            return !statusColors.isEmpty() ? statusColors : createDefaultStatusColors();
-        } catch (Exception e) {
-            log.error("Error fetching all status colors", e);
-            return createDefaultStatusColors();
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
-    // ================ Utility Methods ================
     private String getNodeText(JsonNode node, String field) {
         return getNodeText(node, field, null);
     }
 
     private String getNodeText(JsonNode node, String field, String defaultValue) {
-        return !node.path(field).isMissingNode() && !node.path(field).isNull()
-                ? node.path(field).asText()
-                : defaultValue;
+        JsonNode value = node.get(field);
+        return value != null && !value.isNull() ? value.asText() : defaultValue;
     }
 
     private String getFirstArrayElement(JsonNode node, String field) {
-        return node.path(field).isArray() && node.path(field).size() > 0
-                ? node.path(field).get(0).asText()
-                : null;
-    }
-
-    private Integer getNodeInt(JsonNode node, String field) {
-        return !node.path(field).isMissingNode() && !node.path(field).isNull()
-                ? node.path(field).asInt()
-                : null;
+        JsonNode value = node.get(field);
+        return value != null && value.isArray() && value.size() > 0 ? value.get(0).asText() : null;
     }
 
-    private Double getNodeDouble(JsonNode node, String field) {
-        return !node.path(field).isMissingNode() && !node.path(field).isNull()
-                ? node.path(field).asDouble()
-                : null;
-    }
-
-    private void setCountryInfo(Site site, JsonNode node, Map<String, Map<String, String>> countryData) {
-        String countryId = getNodeText(node, "country__v");
-        site.setCountryId(countryId);
-        if (countryData.containsKey(countryId)) {
-            Map<String, String> countryInfo = countryData.get(countryId);
-            site.setCountry(countryInfo.get("name__v"));
-            site.setCountryCode(countryInfo.get("code__sys"));
-        }
-    }
-
-    private boolean setCoordinates(Site site, JsonNode node) {
-        Double latitude = getNodeDouble(node, "latitude__c");
-        Double longitude = getNodeDouble(node, "longitude__c");
-        if (latitude == null || longitude == null) {
-            return false;
-        }
-        site.setLatitude(latitude);
-        site.setLongitude(longitude);
-        return true;
-    }
-
-    private void setDates(Site site, JsonNode node) {
-        try {
-            String plannedDate = getNodeText(node, "planned_greenlight_date__v");
-            if (plannedDate != null) {
-                site.setPlannedGreenlightDate(DATE_FORMAT.parse(plannedDate));
-            }
-
-            String actualDate = getNodeText(node, "actual_siv__v");
-            if (actualDate != null) {
-                site.setActualSivDate(DATE_FORMAT.parse(actualDate));
-            }
-        } catch (Exception e) {
-            log.warn("Error parsing dates for site {}: {}", site.getId(), e.getMessage());
+    private void setCountryInfo(Site site, Map<String, Country> countryData) {
+        Country country = countryData.get(site.getCountryId());
+        if (country != null) {
+            site.setCountry(country.getName());
+            site.setCountryCode(country.getCode());
         }
     }
 
@@ -359,41 +270,19 @@ public class SiteService {
         return baseUrl + "/#v/" + prefix + "/" + id;
     }
 
-    private StatusColor createStatusColor(JsonNode node) {
-        return new StatusColor(
-                getNodeText(node, "name__v"),
-                getNodeText(node, "site_status__c"),
-                getNodeText(node, "status_color__c")
-        );
-    }
-
-    private List<StatusColor> createDefaultStatusColors() {
-        return Arrays.stream(SiteStatus.values())
-                .map(status -> new StatusColor(
-                        status.name(),
-                        status.getValue(),
-                        DEFAULT_COLORS.get(status.getValue())
-                ))
-                .collect(Collectors.toList());
-    }
-
     // ... existing code ...
 
-    public List<SiteHealthDTO> getSiteHealthData(String studyId) {
-        log.info("Fetching site health data for study: {}", studyId);
-
+    /**
+     * 根据已加载的站点计算健康数据，趋势来自研究的健康评分历史
+     */
+    public List<SiteHealthDTO> getSiteHealthData(String studyId, List<Site> sites) {
         try {
-            // 获取站点数据
-            List<Site> sites = getSites(studyId);
-            if (sites.isEmpty()) {
-                log.info("No sites found for study: {}", studyId);
-                return Collections.emptyList();
-            }
             List<SiteHealthDTO> healthData = new ArrayList<>();
+            Function<String, String> trends = siteHealthHistoryService.trends(studyId);
 
             for (Site site : sites) {
                 try {
-                    SiteHealthDTO healthDTO = calculateSiteHealth(site);
+                    SiteHealthDTO healthDTO = calculateSiteHealth(site, trends);
                     healthData.add(healthDTO);
                 } catch (Exception e) {
                     // 单个站点处理错误不应影响整个列表
@@ -409,7 +298,11 @@ public class SiteService {
         }
     }
 
-    private SiteHealthDTO calculateSiteHealth(Site site) {
+    /**
+     * 计算单个站点的健康数据
+     * @param trends 站点ID到趋势，见 SiteHealthHistoryService#trends
+     */
+    public SiteHealthDTO calculateSiteHealth(Site site, Function<String, String> trends) {
         SiteHealthDTO healthDTO = new SiteHealthDTO();
 
         // 基本信息
@@ -423,84 +316,12 @@ public class SiteService {
         healthDTO.setLastUpdated(new Date());
 
         // 计算健康分数 (示例算法，可根据实际需求调整)
-        int healthScore = calculateHealthScore(site);
+        int healthScore = SiteHealthScorer.score(site);
         healthDTO.setHealthScore(healthScore);
-
-        // 设置健康状态
-        if (healthScore >= 80) {
-            healthDTO.setHealthStatus("良好");
-        } else if (healthScore >= 60) {
-            healthDTO.setHealthStatus("一般");
-        } else {
-            healthDTO.setHealthStatus("需关注");
-        }
-
-        // 设置趋势 (这里使用随机值模拟，实际应基于历史数据)
-        String[] trends = {"上升", "下降", "稳定"};
-        healthDTO.setTrend(trends[new Random().nextInt(trends.length)]);
-
-        // 设置问题列表
-        healthDTO.setIssues(identifyIssues(site, healthScore));
+        healthDTO.setHealthStatus(SiteHealthScorer.status(healthScore));
+        healthDTO.setTrend(trends.apply(site.getId()));
+        healthDTO.setIssues(SiteHealthScorer.issues(site, healthScore));
 
         return healthDTO;
     }
-
-    private int calculateHealthScore(Site site) {
-        // 基础分数
-        int baseScore = 50;
-
-        // 根据站点状态调整分数
-        if ("active__v".equals(site.getStatus())) {
-            baseScore += 30;
-        } else if ("completed__v".equals(site.getStatus())) {
-            baseScore += 40;
-        } else if ("on_hold__v".equals(site.getStatus())) {
-            baseScore -= 10;
-        } else if ("suspended__v".equals(site.getStatus())) {
-            baseScore -= 20;
-        } else if ("terminated__v".equals(site.getStatus())) {
-            baseScore -= 30;
-        }
-
-        // 根据其他因素调整分数
-        if (site.getDaysToGreenlight() != null) {
-            if (site.getDaysToGreenlight() <= 30) {
-                baseScore += 10;
-            } else if (site.getDaysToGreenlight() > 60) {
-                baseScore -= 10;
-            }
-        }
-
-        // 确保分数在0-100范围内
-        return Math.max(0, Math.min(100, baseScore));
-    }
-
-    private List<String> identifyIssues(Site site, int healthScore) {
-        List<String> issues = new ArrayList<>();
-
-        // 根据健康分数和站点状态识别问题
-        if (healthScore < 60) {
-            issues.add("健康指数低");
-        }
-
-        if ("on_hold__v".equals(site.getStatus())) {
-            issues.add("站点处于搁置状态");
-        } else if ("suspended__v".equals(site.getStatus())) {
-            issues.add("站点已暂停");
-        } else if ("terminated__v".equals(site.getStatus())) {
-            issues.add("站点已终止");
-        }
-
-        if (site.getDaysToGreenlight() != null && site.getDaysToGreenlight() > 60) {
-            issues.add("启动时间过长");
-        }
-
-        // 如果没有问题，添加一个正面评价
-        if (issues.isEmpty()) {
-            issues.add("站点运行良好");
-        }
-
-        return issues;
-    }
-
 }
@@ -0,0 +1,157 @@
+package org.wonder.wonderdrugs.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.cache.ContentHash;
+import org.wonder.wonderdrugs.model.SiteStatus;
+import org.wonder.wonderdrugs.model.StatusColor;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 站点状态颜色配置持有者
+ * 配置由调度器在后台加载和刷新，读取方始终拿到不可变快照，既不加锁也不调用 Vault；
+ * 仅在配置从未成功加载时回退到默认颜色
+ */
+@Slf4j
+@Service
+public class StatusColorService {
+    // ================ Constants ================
+    public static final String DEFAULT_COLOR = "#CCCCCC";
+    public static final Map<String, String> DEFAULT_COLORS = Map.of(
+            SiteStatus.ACTIVE.getValue(), "#4CAF50",     // Green
+            SiteStatus.INACTIVE.getValue(), "#F44336",   // Red
+            SiteStatus.ON_HOLD.getValue(), "#FF9800",    // Orange
+            SiteStatus.COMPLETED.getValue(), "#2196F3",  // Blue
+            SiteStatus.SUSPENDED.getValue(), "#FFC107",  // Yellow
+            SiteStatus.TERMINATED.getValue(), "#9C27B0"  // Purple
+    );
+
+    private static final String COLOR_QUERY =
+            "SELECT site_status__c, status_color__c FROM site_status_configuration__c";
+    private static final String ACTIVE_COLOR_QUERY = """
+            SELECT name__v, site_status__c, status_color__c
+            FROM site_status_configuration__c
+            WHERE status__v = 'ACTIVE'
+            """;
+
+    private static final RowMapper<StatusColor> STATUS_COLOR_MAPPER = RowMapper.builder(StatusColor::new)
+            .text("name__v", StatusColor::setName)
+            .text("site_status__c", StatusColor::setSiteStatus)
+            .text("status_color__c", StatusColor::setStatusColor)
+            .build();
+
+    private final VaultService vaultService;
+    private final long refreshIntervalMillis;
+
+    private volatile Snapshot snapshot = Snapshot.defaults();
+
+    @Autowired
+    public StatusColorService(VaultService vaultService,
+                              @Value("${vault.status-colors.refresh-interval:PT5M}") Duration refreshInterval) {
+        this.vaultService = vaultService;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+    }
+
+    /**
+     * @return 状态到颜色的不可变映射
+     */
+    public Map<String, String> getColors() {
+        return snapshot.colors;
+    }
+
+    /**
+     * @return 启用状态的颜色配置列表（不可变）
+     */
+    public List<StatusColor> getActiveStatusColors() {
+        return snapshot.activeColors;
+    }
+
+    /**
+     * @return 颜色映射的内容指纹
+     */
+    public long getColorsHash() {
+        return snapshot.colorsHash;
+    }
+
+    public String colorFor(String siteStatus) {
+        return snapshot.colors.getOrDefault(siteStatus, DEFAULT_COLOR);
+    }
+
+    public boolean isLoaded() {
+        return snapshot.loadedAt > 0;
+    }
+
+    /**
+     * 调度器频繁检查，但只在从未加载或超过刷新间隔时访问 Vault，
+     * 这样登录后第一次加载无需等待完整的刷新周期
+     */
+    @Scheduled(fixedDelayString = "${vault.status-colors.check-interval:PT15S}")
+    public void refreshIfDue() {
+        if (!vaultService.hasActiveSession()) {
+            return;
+        }
+        if (System.currentTimeMillis() - snapshot.loadedAt >= refreshIntervalMillis) {
+            refresh();
+        }
+    }
+
+    /**
+     * 重新加载颜色配置；失败时保留上一份快照
+     */
+    public void refresh() {
+        try {
+            Map<String, String> colors = new HashMap<>(DEFAULT_COLORS);
+            vaultService.streamQuery(COLOR_QUERY, STATUS_COLOR_MAPPER, row -> {
+                if (row.getSiteStatus() != null && row.getStatusColor() != null) {
+                    colors.put(row.getSiteStatus(), row.getStatusColor());
+                }
+            });
+
+            List<StatusColor> activeColors = new ArrayList<>();
+            vaultService.streamQuery(ACTIVE_COLOR_QUERY, STATUS_COLOR_MAPPER, activeColors::add);
+
+            snapshot = new Snapshot(
+                    Map.copyOf(colors),
+                    activeColors.isEmpty() ? createDefaultStatusColors() : List.copyOf(activeColors),
+                    System.currentTimeMillis());
+            log.debug("Loaded {} status colors", colors.size());
+        } catch (Exception e) {
+            log.warn("Error refreshing status colors, keeping previous configuration: {}", e.getMessage());
+        }
+    }
+
+    // ================ Utility Methods ================
+    private static List<StatusColor> createDefaultStatusColors() {
+        return Arrays.stream(SiteStatus.values())
+                .map(status -> new StatusColor(
+                        status.name(),
+                        status.getValue(),
+                        DEFAULT_COLORS.get(status.getValue())
+                ))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    private static final class Snapshot {
+        private final Map<String, String> colors;
+        private final List<StatusColor> activeColors;
+        private final long loadedAt;
+        private final long colorsHash;
+
+        private Snapshot(Map<String, String> colors, List<StatusColor> activeColors, long loadedAt) {
+            this.colors = colors;
+            this.activeColors = activeColors;
+            this.loadedAt = loadedAt;
+            this.colorsHash = ContentHash.of(colors);
+        }
+
+        private static Snapshot defaults() {
+            return new Snapshot(DEFAULT_COLORS, createDefaultStatusColors(), 0L);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.wonder.wonderdrugs.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,6 +13,15 @@ import java.util.List;
 public class StudyService {
     private static final Logger logger = LoggerFactory.getLogger(StudyService.class);
 
+    private static final RowMapper<Study> STUDY_MAPPER = RowMapper.builder(Study::new)
+            .text("id", Study::setId)
+            .text("name__v", Study::setNumber)
+            .text("study_name__v", Study::setName)
+            .first("status__v", Study::setStatus)
+            .first("study_phase__v", Study::setPhase)
+            .first("study_type__v", Study::setType)
+            .build();
+
     private final VaultService vaultService;
 
     @Autowired
@@ -21,7 +29,10 @@ public class StudyService {
         this.vaultService = vaultService;
     }
 
-    public List<Study> getStudies() {
+    /**
+     * 从 Vault 加载研究列表，失败时抛出异常
+     */
+    public List<Study> loadStudies() {
         logger.info("Fetching studies");
 
         String query = "SELECT id, name__v, study_name__v, status__v, study_phase__v, study_type__v " +
@@ -30,38 +41,13 @@ public class StudyService {
 
         List<Study> studies = new ArrayList<>();
 
-        try {
-            JsonNode data = vaultService.executeQuery(query);
-
-            for (JsonNode node : data) {
-                Study study = new Study();
-                study.setId(node.path("id").asText());
-                study.setNumber(node.path("name__v").asText());
-                study.setName(node.path("study_name__v").asText());
-
-                if (node.path("status__v").isArray() && node.path("status__v").size() > 0) {
-                    study.setStatus(node.path("status__v").get(0).asText());
-                }
-
-                if (node.path("study_phase__v").isArray() && node.path("study_phase__v").size() > 0) {
-                    study.setPhase(node.path("study_phase__v").get(0).asText());
-                }
-
-                if (node.path("study_type__v").isArray() && node.path("study_type__v").size() > 0) {
-                    study.setType(node.path("study_type__v").get(0).asText());
-                }
-
-                // 设置Vault URL
-                study.setVaultUrl(vaultService.getVaultWebUrl() + "/#study/" + study.getId() + "/details");
-
-                studies.add(study);
-            }
+        vaultService.streamQuery(query, STUDY_MAPPER, study -> {
+            // 设置Vault URL
+            study.setVaultUrl(vaultService.getVaultWebUrl() + "/#study/" + study.getId() + "/details");
+            studies.add(study);
+        });
 
-            logger.info("Found {} studies", studies.size());
-            return studies;
-        } catch (Exception e) {
-            logger.error("Error fetching studies", e);
-            return new ArrayList<>();
-        }
+        logger.info("Found {} studies", studies.size());
+        return studies;
     }
 }
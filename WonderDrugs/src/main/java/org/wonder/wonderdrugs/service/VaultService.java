@@ -1,121 +1,308 @@
 package org.wonder.wonderdrugs.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
+import org.wonder.wonderdrugs.cache.SingleFlight;
 import org.wonder.wonderdrugs.config.VaultConfig;
+import org.wonder.wonderdrugs.dto.CoalescingStatsDTO;
 import org.wonder.wonderdrugs.exception.VaultApiException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 @Service
 public class VaultService {
     private static final Logger logger = LoggerFactory.getLogger(VaultService.class);
+    private static final Pattern PAGING_CLAUSE = Pattern.compile("\\b(PAGESIZE|LIMIT)\\b", Pattern.CASE_INSENSITIVE);
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final VaultConfig vaultConfig;
-
-    private String sessionId;
+    private final VaultSessionManager sessionManager;
+    private final AsyncTaskExecutor prefetchExecutor;
+    private final AsyncTaskExecutor queryExecutor;
+    private final int pageSize;
+    private final int maxInFlightPages;
+    private final SingleFlight<String, JsonNode> queryFlights = new SingleFlight<>("vault-query", JsonNode::deepCopy);
 
     @Autowired
-    public VaultService(RestTemplate restTemplate, VaultConfig vaultConfig) {
+    public VaultService(RestTemplate restTemplate, VaultConfig vaultConfig, VaultSessionManager sessionManager,
+                        @Qualifier("vaultPrefetchExecutor") AsyncTaskExecutor prefetchExecutor,
+                        @Qualifier("vaultQueryExecutor") AsyncTaskExecutor queryExecutor,
+                        @Value("${vault.query.page-size:1000}") int pageSize,
+                        @Value("${vault.query.max-in-flight-pages:2}") int maxInFlightPages) {
         this.restTemplate = restTemplate;
-        this.objectMapper = new ObjectMapper();
+        this.objectMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         this.vaultConfig = vaultConfig;
+        this.sessionManager = sessionManager;
+        this.prefetchExecutor = prefetchExecutor;
+        this.queryExecutor = queryExecutor;
+        this.pageSize = pageSize;
+        this.maxInFlightPages = maxInFlightPages;
     }
 
+    /**
+     * 登录并为该用户登记一个独立的会话
+     * @return 会话ID，认证失败时返回 null
+     */
     public String authenticate(String username, String password) {
-        logger.info("Authenticating user: {}", username);
+        return sessionManager.login(username, password);
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        headers.set("Accept", "application/json");
+    public boolean keepAlive(String sessionId) {
+        return sessionManager.keepAlive(sessionId);
+    }
 
-        MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
-        map.add("username", username);
-        map.add("password", password);
+    /**
+     * 执行查询并返回全部记录
+     * 同一会话范围内（同一用户或会话池）规范化后语句相同的并发查询只向 Vault 发出一次，
+     * 每个调用方得到结果的独立副本
+     */
+    public JsonNode executeQuery(String query) {
+        return queryFlights.execute(coalescingKey(normalizeQuery(query)), () -> {
+            ArrayNode data = objectMapper.createArrayNode();
+            streamQuery(query, data::add);
+            return data;
+        });
+    }
+
+    /**
+     * 合并并发请求的键，带上当前线程的会话范围，不同用户的请求不会共享结果
+     */
+    public String coalescingKey(String key) {
+        return sessionManager.scope() + "|" + key;
+    }
 
-        HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
+    public CoalescingStatsDTO getCoalescingStats() {
+        return queryFlights.stats();
+    }
 
-        try {
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    vaultConfig.getVaultUrl() + "/auth", request, String.class);
-
-            JsonNode root = objectMapper.readTree(response.getBody());
-            if ("SUCCESS".equals(root.path("responseStatus").asText())) {
-                sessionId = root.path("sessionId").asText();
-                logger.info("Authentication successful");
-                return sessionId;
-            } else {
-                logger.warn("Authentication failed: {}", root.path("errors"));
-                return null;
+    /**
+     * 折叠引号外的连续空白，使仅排版不同的语句得到同一个键；字面量中的 \' 转义不结束字面量
+     */
+    static String normalizeQuery(String query) {
+        StringBuilder normalized = new StringBuilder(query.length());
+        boolean inLiteral = false;
+        boolean pendingSpace = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (!inLiteral && Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
             }
-        } catch (Exception e) {
-            logger.error("Authentication error", e);
-            return null;
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            if (inLiteral && c == '\\' && i + 1 < query.length()) {
+                normalized.append(c).append(query.charAt(++i));
+                continue;
+            }
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            }
+            normalized.append(c);
         }
+        return normalized.toString();
     }
 
-    public void keepAlive() {
-        if (sessionId != null) {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", sessionId);
-            headers.set("Accept", "application/json");
-
-            HttpEntity<String> request = new HttpEntity<>(headers);
+    /**
+     * 在专用线程池上异步执行查询，便于并发发出相互独立的查询；查询使用发起线程绑定的用户会话
+     * @param query VQL 语句
+     * @return 包含全部分页记录的 JSON 数组
+     */
+    public CompletableFuture<JsonNode> executeQueryAsync(String query) {
+        String sessionId = sessionManager.boundSession();
+        return CompletableFuture.supplyAsync(() -> sessionManager.callBound(sessionId, () -> executeQuery(query)),
+                queryExecutor);
+    }
 
-            try {
-                restTemplate.postForEntity(vaultConfig.getVaultUrl() + "/keep-alive", request, String.class);
-                logger.debug("Session kept alive");
-            } catch (Exception e) {
-                logger.error("Error keeping session alive", e);
-            }
+    /**
+     * 流式执行查询，逐行把 data 数组中的记录交给调用方，自动跟随 next_page 取回全部分页
+     * @param query VQL 语句
+     * @param rowConsumer 每行记录的处理函数
+     */
+    public void streamQuery(String query, Consumer<JsonNode> rowConsumer) {
+        try (Stream<JsonNode> rows = queryStream(query)) {
+            rows.forEach(rowConsumer);
         }
     }
 
-    public JsonNode executeQuery(String query) {
-        if (sessionId == null) {
-            logger.error("No active session");
-            throw new VaultApiException("No active session");
+    /**
+     * 流式执行查询，每行记录由 RowMapper 直接从响应的 token 流绑定，不经过 JsonNode
+     * @param query VQL 语句
+     * @param mapper 行映射
+     * @param rowConsumer 每行记录的处理函数
+     */
+    public <T> void streamQuery(String query, RowMapper<T> mapper, Consumer<? super T> rowConsumer) {
+        try (Stream<T> rows = queryStream(query, mapper::read)) {
+            rows.forEach(rowConsumer);
         }
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", sessionId);
+    /**
+     * 以惰性流的形式返回查询的全部分页结果
+     * 后台线程在调用方处理当前页时预取下一页；调用方必须关闭返回的流（try-with-resources）
+     * @param query VQL 语句，未指定 PAGESIZE/LIMIT 时追加配置的页大小
+     */
+    public Stream<JsonNode> queryStream(String query) {
+        return queryStream(query, parser -> objectMapper.readTree(parser));
+    }
+
+    private <T> Stream<T> queryStream(String query, RowReader<T> rowReader) {
+        // next_page 游标属于发出首个请求的会话，同一查询的全部分页使用同一个会话
+        String sessionId = sessionManager.acquire();
+        String pagedQuery = PAGING_CLAUSE.matcher(query).find()
+                ? query
+                : query.strip() + " PAGESIZE " + pageSize;
+
+        VqlPageIterator<T> iterator = new VqlPageIterator<>(
+                (nextPage, consumer) -> nextPage == null
+                        ? fetchFirstPage(sessionId, pagedQuery, rowReader, consumer)
+                        : fetchNextPage(sessionId, nextPage, rowReader, consumer),
+                prefetchExecutor,
+                maxInFlightPages);
+
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private <T> VqlResponseDetails fetchFirstPage(String sessionId, String query, RowReader<T> rowReader,
+                                                  Consumer<? super T> rowConsumer) {
+        HttpHeaders headers = createQueryHeaders(sessionId);
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-        // 修改这里，只设置 Accept 为 application/json
-        headers.set("Accept", "application/json");
 
         MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
         map.add("q", query);
 
-        HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(map, headers);
+        logger.debug("Executing query: {}", query);
+        return fetchPage(sessionId, vaultConfig.getVaultUrl() + "/query", HttpMethod.POST,
+                new HttpEntity<>(map, headers), rowReader, rowConsumer);
+    }
+
+    private <T> VqlResponseDetails fetchNextPage(String sessionId, String nextPage, RowReader<T> rowReader,
+                                                 Consumer<? super T> rowConsumer) {
+        // next_page 是以 /api/ 开头的相对路径
+        URI vaultUri = URI.create(vaultConfig.getVaultUrl());
+        String url = vaultUri.getScheme() + "://" + vaultUri.getRawAuthority() + nextPage;
+
+        logger.debug("Fetching query page: {}", nextPage);
+        return fetchPage(sessionId, url, HttpMethod.GET, new HttpEntity<>(createQueryHeaders(sessionId)),
+                rowReader, rowConsumer);
+    }
+
+    private HttpHeaders createQueryHeaders(String sessionId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Authorization", sessionId);
+        headers.set("Accept", "application/json");
+        return headers;
+    }
 
+    private <T> VqlResponseDetails fetchPage(String sessionId, String url, HttpMethod method, HttpEntity<?> request,
+                                             RowReader<T> rowReader, Consumer<? super T> rowConsumer) {
         try {
-            logger.debug("Executing query: {}", query);
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    vaultConfig.getVaultUrl() + "/query", request, String.class);
-
-            JsonNode root = objectMapper.readTree(response.getBody());
-            if ("SUCCESS".equals(root.path("responseStatus").asText())) {
-                return root.path("data");
-            } else {
-                logger.error("Query failed: {}", root.path("errors"));
-                throw new VaultApiException("Query failed: " + root.path("errors").toString());
-            }
+            return restTemplate.execute(
+                    url,
+                    method,
+                    restTemplate.httpEntityCallback(request),
+                    response -> parseQueryResponse(sessionId, response.getBody(), rowReader, rowConsumer));
+        } catch (VaultApiException e) {
+            throw e;
         } catch (Exception e) {
             logger.error("Error executing query", e);
             throw new VaultApiException("Error executing query: " + e.getMessage());
         }
     }
 
-    public String getSessionId() {
-        return sessionId;
+    /**
+     * 使用 Jackson 的 token 流解析 VQL 响应；Vault 通常在 data 之前返回 responseStatus，
+     * 此时记录边解析边交给调用方。若 data 先于 responseStatus 出现，记录先缓存到读完整个响应，
+     * 确认成功后再交付，因此失败的查询不会把任何记录交给调用方
+     */
+    private <T> VqlResponseDetails parseQueryResponse(String sessionId, InputStream body, RowReader<T> rowReader,
+                                                      Consumer<? super T> rowConsumer) throws IOException {
+        String status = null;
+        JsonNode errors = null;
+        VqlResponseDetails details = VqlResponseDetails.empty();
+        List<T> buffered = null;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new VaultApiException("Unexpected query response");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                switch (field) {
+                    case "responseStatus" -> status = parser.getText();
+                    case "responseDetails" -> details = VqlResponseDetails.fromNode(objectMapper.readTree(parser));
+                    case "errors" -> errors = objectMapper.readTree(parser);
+                    case "data" -> {
+                        if (token != JsonToken.START_ARRAY || (status != null && !"SUCCESS".equals(status))) {
+                            parser.skipChildren();
+                        } else if (status == null) {
+                            buffered = new ArrayList<>();
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                buffered.add(rowReader.read(parser));
+                            }
+                        } else {
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                rowConsumer.accept(rowReader.read(parser));
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        if (!"SUCCESS".equals(status)) {
+            if (VaultSessionManager.isInvalidSessionError(errors)) {
+                sessionManager.invalidate(sessionId);
+            }
+            logger.error("Query failed: {}", errors);
+            throw new VaultApiException("Query failed: " + errors);
+        }
+        if (buffered != null) {
+            buffered.forEach(rowConsumer);
+        }
+        return details;
+    }
+
+    /**
+     * @return 是否存在可供后台查询使用的会话
+     */
+    public boolean hasActiveSession() {
+        return sessionManager.hasActiveSession();
     }
 
     public String getVaultWebUrl() {
@@ -123,52 +310,19 @@ public class VaultService {
     }
 
 
-    // ... existing code ...
-
     /**
-     * 注销当前会话
+     * 注销指定会话，其他用户的会话不受影响
      * @return 是否成功注销
      */
-    // ... existing code ...
+    public boolean logout(String sessionId) {
+        return sessionManager.logout(sessionId);
+    }
 
     /**
-     * 注销当前会话
-     * @return 是否成功注销
+     * 从位于行对象 START_OBJECT 的解析器读取一行
      */
-    public boolean logout() {
-        if (sessionId == null) {
-            logger.warn("尝试注销但没有活动会话");
-            return false;
-        }
-
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Accept", "application/json");
-            headers.set("Authorization", sessionId);
-
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(
-                    vaultConfig.getVaultUrl() + "/session",
-                    HttpMethod.DELETE,  // Vault API使用DELETE方法结束会话
-                    entity,
-                    String.class
-            );
-
-            JsonNode root = objectMapper.readTree(response.getBody());
-            if ("SUCCESS".equals(root.path("responseStatus").asText())) {
-                logger.info("成功从Vault注销");
-                sessionId = null;  // 清除会话ID
-                return true;
-            } else {
-                logger.warn("从Vault注销失败: {}", root.path("errors"));
-                return false;
-            }
-        } catch (Exception e) {
-            logger.error("Vault注销过程中出错: {}", e.getMessage(), e);
-            return false;
-        }
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(JsonParser parser) throws IOException;
     }
-
-
 }
@@ -0,0 +1,487 @@
+package org.wonder.wonderdrugs.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+import org.wonder.wonderdrugs.config.VaultConfig;
+import org.wonder.wonderdrugs.dto.VaultSessionStatsDTO;
+import org.wonder.wonderdrugs.exception.VaultApiException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Vault 会话池
+ * 每个登录用户持有自己的会话，互不覆盖，同一用户最多保留 max-per-user 个会话（超出时结束最早的会话）；可选的服务账号按 pool-size 打开多个会话供后台同步使用。
+ * 会话按最近一次使用计算空闲过期时间，调度器在过期前调用 keep-alive 续期，
+ * 服务账号会话失效或接近最长寿命时用保存的凭据重新登录，使查询路径上不出现重新认证。
+ * <p>
+ * 请求线程上绑定了用户会话时查询使用该会话，异步查询通过 {@link #callBound} 带上发起线程的绑定；
+ * 绑定的会话过期或失效后查询以 401 失败，不会借用其他用户的会话。
+ * 其余查询（后台同步）在服务账号会话间轮询，没有服务账号时在全部用户会话间轮询
+ */
+@Slf4j
+@Service
+public class VaultSessionManager {
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String INVALID_SESSION = "INVALID_SESSION_ID";
+
+    private static final ThreadLocal<String> BOUND_SESSION = new ThreadLocal<>();
+
+    private final RestTemplate restTemplate;
+    private final VaultConfig vaultConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long renewAheadMillis;
+    private final String serviceUsername;
+    private final String servicePassword;
+    private final int servicePoolSize;
+    private final int maxPerUser;
+
+    private final Map<String, VaultSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger cursor = new AtomicInteger();
+    private final AtomicLong renewals = new AtomicLong();
+    private final AtomicLong reauthentications = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong sessionSequence = new AtomicLong();
+
+    // 轮询用的只读快照，会话增删时整体替换
+    private volatile VaultSession[] pool = new VaultSession[0];
+
+    @Autowired
+    public VaultSessionManager(RestTemplate restTemplate, VaultConfig vaultConfig,
+                               @Value("${vault.session.idle-timeout:PT20M}") Duration idleTimeout,
+                               @Value("${vault.session.max-lifetime:PT47H}") Duration maxLifetime,
+                               @Value("${vault.session.renew-ahead:PT5M}") Duration renewAhead,
+                               @Value("${vault.session.service-account.username:}") String serviceUsername,
+                               @Value("${vault.session.service-account.password:}") String servicePassword,
+                               @Value("${vault.session.service-account.pool-size:2}") int servicePoolSize,
+                               @Value("${vault.session.max-per-user:5}") int maxPerUser) {
+        this.restTemplate = restTemplate;
+        this.vaultConfig = vaultConfig;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.maxLifetimeMillis = maxLifetime.toMillis();
+        this.renewAheadMillis = renewAhead.toMillis();
+        this.serviceUsername = serviceUsername;
+        this.servicePassword = servicePassword;
+        this.servicePoolSize = serviceUsername.isBlank() ? 0 : Math.max(1, servicePoolSize);
+        this.maxPerUser = Math.max(1, maxPerUser);
+    }
+
+    // ================ User sessions ================
+
+    /**
+     * 以用户身份登录并登记一个新的会话，其他用户的会话不受影响；
+     * 该用户的会话超过 max-per-user 个时结束最早创建的会话
+     * @return 会话ID，认证失败时返回 null
+     */
+    public String login(String username, String password) {
+        log.info("Authenticating user: {}", username);
+        String sessionId = authenticate(username, password);
+        if (sessionId != null) {
+            register(new VaultSession(sessionId, username, false));
+            evictOldest(username);
+            log.info("Authentication successful, {} active sessions", sessions.size());
+        }
+        return sessionId;
+    }
+
+    private void evictOldest(String username) {
+        List<VaultSession> owned = new ArrayList<>();
+        for (VaultSession session : sessions.values()) {
+            if (!session.serviceAccount && session.owner.equals(username)) {
+                owned.add(session);
+            }
+        }
+        if (owned.size() <= maxPerUser) {
+            return;
+        }
+        owned.sort(Comparator.comparingLong((VaultSession session) -> session.sequence));
+        for (VaultSession session : owned.subList(0, owned.size() - maxPerUser)) {
+            log.info("User {} has more than {} sessions, ending the oldest", username, maxPerUser);
+            unregister(session);
+            endSession(session.id);
+        }
+    }
+
+    /**
+     * 立即续期指定会话
+     * @return 会话仍然有效时返回 true
+     */
+    public boolean keepAlive(String sessionId) {
+        VaultSession session = sessionId != null ? sessions.get(sessionId) : null;
+        return session != null && renew(session);
+    }
+
+    /**
+     * 结束指定会话；Vault 端注销失败时本地仍移除该会话
+     * @return Vault 是否确认注销
+     */
+    public boolean logout(String sessionId) {
+        VaultSession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null) {
+            log.warn("Logout requested for an unknown session");
+            return false;
+        }
+        unregister(session);
+        return endSession(sessionId);
+    }
+
+    public boolean isActive(String sessionId) {
+        VaultSession session = sessionId != null ? sessions.get(sessionId) : null;
+        return session != null && !session.isExpired(System.currentTimeMillis());
+    }
+
+    public boolean hasActiveSession() {
+        return pool.length > 0;
+    }
+
+    /**
+     * 从 Authorization 请求头中取出会话ID，兼容带或不带 Bearer 前缀
+     */
+    public static String sessionIdFrom(String authorization) {
+        if (authorization == null || authorization.isBlank()) {
+            return null;
+        }
+        String value = authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())
+                ? authorization.substring(BEARER_PREFIX.length())
+                : authorization;
+        return value.isBlank() ? null : value.strip();
+    }
+
+    // ================ Request binding ================
+
+    /**
+     * 把用户会话绑定到当前线程，之后在该线程上发起的查询使用这个会话；
+     * 先清除线程上残留的绑定，未知会话不绑定任何会话
+     */
+    public void bind(String sessionId) {
+        BOUND_SESSION.remove();
+        if (isActive(sessionId)) {
+            BOUND_SESSION.set(sessionId);
+        }
+    }
+
+    public void unbind() {
+        BOUND_SESSION.remove();
+    }
+
+    /**
+     * @return 当前线程绑定的会话ID，没有时为 null
+     */
+    public String boundSession() {
+        return BOUND_SESSION.get();
+    }
+
+    /**
+     * 以指定的会话绑定执行任务，结束后恢复线程原有的绑定；用于把请求线程的用户会话带到异步线程
+     * @param sessionId 发起线程的 {@link #boundSession()}，null 表示使用会话池
+     */
+    public <T> T callBound(String sessionId, Supplier<T> task) {
+        String previous = BOUND_SESSION.get();
+        setBound(sessionId);
+        try {
+            return task.get();
+        } finally {
+            setBound(previous);
+        }
+    }
+
+    /**
+     * 当前线程上查询结果的可见范围：绑定了用户会话时为该用户，否则为共享的会话池。
+     * 合并并发请求时作为键的一部分，一个用户不会拿到以另一个用户的权限取回的数据
+     */
+    public String scope() {
+        String boundId = BOUND_SESSION.get();
+        if (boundId == null) {
+            return "pool";
+        }
+        VaultSession bound = activeBound(boundId, System.currentTimeMillis());
+        // 绑定的会话已失效时查询会在 acquire 中失败，范围只需与其他请求都不相同
+        return bound != null ? "user:" + bound.owner : "expired:" + boundId;
+    }
+
+    private VaultSession activeBound(String boundId, long now) {
+        VaultSession bound = sessions.get(boundId);
+        return bound != null && !bound.isExpired(now) ? bound : null;
+    }
+
+    private static void setBound(String sessionId) {
+        if (sessionId != null) {
+            BOUND_SESSION.set(sessionId);
+        } else {
+            BOUND_SESSION.remove();
+        }
+    }
+
+    /**
+     * 为一次查询选择会话：当前线程绑定了用户会话时使用该会话，否则在会话池中轮询
+     * @throws VaultApiException 绑定的用户会话已过期或失效（状态码 401），或没有任何有效会话
+     */
+    public String acquire() {
+        long now = System.currentTimeMillis();
+        String boundId = BOUND_SESSION.get();
+        if (boundId != null) {
+            VaultSession bound = activeBound(boundId, now);
+            if (bound == null) {
+                log.warn("Bound session is no longer active");
+                throw new VaultApiException("Session expired, please log in again", INVALID_SESSION, 401);
+            }
+            bound.lastUsedAt = now;
+            return bound.id;
+        }
+
+        VaultSession[] candidates = pool;
+        for (int i = 0; i < candidates.length; i++) {
+            VaultSession session = candidates[Math.floorMod(cursor.getAndIncrement(), candidates.length)];
+            if (!session.isExpired(now)) {
+                session.lastUsedAt = now;
+                return session.id;
+            }
+        }
+        log.error("No active session");
+        throw new VaultApiException("No active session");
+    }
+
+    /**
+     * Vault 报告会话无效时调用；用户会话被移除，服务账号会话由下一次维护重新登录补齐
+     */
+    public void invalidate(String sessionId) {
+        VaultSession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null) {
+            log.warn("Vault rejected session of {}, dropping it", session.owner);
+            expirations.incrementAndGet();
+            unregister(session);
+        }
+    }
+
+    static boolean isInvalidSessionError(JsonNode errors) {
+        if (errors != null) {
+            for (JsonNode error : errors) {
+                if (INVALID_SESSION.equals(error.path("type").asText())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ================ Maintenance ================
+
+    /**
+     * 续期即将空闲过期的会话，轮换接近最长寿命的服务账号会话，并补足服务账号会话池；
+     * 启动后立即执行一次，使服务账号会话在第一次后台同步前就绪
+     */
+    @Scheduled(fixedDelayString = "${vault.session.check-interval:PT1M}")
+    public void maintainSessions() {
+        long now = System.currentTimeMillis();
+        for (VaultSession session : List.copyOf(sessions.values())) {
+            if (session.isExpired(now)) {
+                log.info("Session of {} expired", session.owner);
+                expirations.incrementAndGet();
+                unregister(session);
+            } else if (now - session.createdAt >= maxLifetimeMillis - renewAheadMillis) {
+                retire(session);
+            } else if (session.expiresAt() - now <= renewAheadMillis) {
+                renew(session);
+            }
+        }
+        fillServicePool();
+    }
+
+    public VaultSessionStatsDTO getStats() {
+        int serviceSessions = (int) sessions.values().stream().filter(session -> session.serviceAccount).count();
+        return VaultSessionStatsDTO.builder()
+                .userSessions(sessions.size() - serviceSessions)
+                .serviceSessions(serviceSessions)
+                .renewals(renewals.get())
+                .reauthentications(reauthentications.get())
+                .expirations(expirations.get())
+                .build();
+    }
+
+    /**
+     * 服务账号会话先登录替代会话再退出旧会话；用户会话无法重新认证，到期后移除
+     */
+    private void retire(VaultSession session) {
+        if (!session.serviceAccount) {
+            if (session.createdAt + maxLifetimeMillis <= System.currentTimeMillis()) {
+                log.info("Session of {} reached its maximum lifetime", session.owner);
+                expirations.incrementAndGet();
+                unregister(session);
+            } else {
+                renew(session);
+            }
+            return;
+        }
+        if (openServiceSession()) {
+            unregister(session);
+            endSession(session.id);
+        }
+    }
+
+    private void fillServicePool() {
+        if (servicePoolSize == 0) {
+            return;
+        }
+        long open = sessions.values().stream().filter(session -> session.serviceAccount).count();
+        for (long i = open; i < servicePoolSize; i++) {
+            if (!openServiceSession()) {
+                return;
+            }
+        }
+    }
+
+    private boolean openServiceSession() {
+        String sessionId = authenticate(serviceUsername, servicePassword);
+        if (sessionId == null) {
+            log.warn("Service account {} could not authenticate", serviceUsername);
+            return false;
+        }
+        reauthentications.incrementAndGet();
+        register(new VaultSession(sessionId, serviceUsername, true));
+        log.info("Opened service account session for {}", serviceUsername);
+        return true;
+    }
+
+    private boolean renew(VaultSession session) {
+        try {
+            JsonNode root = post("/keep-alive", session.id, null);
+            if ("SUCCESS".equals(root.path("responseStatus").asText())) {
+                session.lastUsedAt = System.currentTimeMillis();
+                renewals.incrementAndGet();
+                log.debug("Session of {} kept alive", session.owner);
+                return true;
+            }
+            if (isInvalidSessionError(root.path("errors"))) {
+                invalidate(session.id);
+            } else {
+                log.warn("Keep-alive failed for {}: {}", session.owner, root.path("errors"));
+            }
+        } catch (Exception e) {
+            log.error("Error keeping session alive", e);
+        }
+        return false;
+    }
+
+    // ================ Vault calls ================
+
+    private String authenticate(String username, String password) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("username", username);
+        form.add("password", password);
+
+        try {
+            JsonNode root = post("/auth", null, form);
+            if ("SUCCESS".equals(root.path("responseStatus").asText())) {
+                return root.path("sessionId").asText();
+            }
+            log.warn("Authentication failed: {}", root.path("errors"));
+        } catch (Exception e) {
+            log.error("Authentication error", e);
+        }
+        return null;
+    }
+
+    private boolean endSession(String sessionId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Accept", "application/json");
+        headers.set("Authorization", sessionId);
+
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(
+                    vaultConfig.getVaultUrl() + "/session",
+                    HttpMethod.DELETE,  // Vault API使用DELETE方法结束会话
+                    new HttpEntity<>(headers),
+                    String.class);
+
+            JsonNode root = objectMapper.readTree(response.getBody());
+            if ("SUCCESS".equals(root.path("responseStatus").asText())) {
+                log.info("Session ended");
+                return true;
+            }
+            log.warn("Ending session failed: {}", root.path("errors"));
+        } catch (Exception e) {
+            log.error("Error ending session: {}", e.getMessage(), e);
+        }
+        return false;
+    }
+
+    private JsonNode post(String path, String sessionId, MultiValueMap<String, String> form) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Accept", "application/json");
+        if (sessionId != null) {
+            headers.set("Authorization", sessionId);
+        }
+        if (form != null) {
+            headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        }
+
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                vaultConfig.getVaultUrl() + path, new HttpEntity<>(form, headers), String.class);
+        return objectMapper.readTree(response.getBody());
+    }
+
+    // ================ Registry ================
+
+    private void register(VaultSession session) {
+        sessions.put(session.id, session);
+        rebuildPool();
+    }
+
+    private void unregister(VaultSession session) {
+        if (sessions.remove(session.id, session)) {
+            rebuildPool();
+        }
+    }
+
+    private synchronized void rebuildPool() {
+        List<VaultSession> service = new ArrayList<>();
+        List<VaultSession> users = new ArrayList<>();
+        for (VaultSession session : sessions.values()) {
+            (session.serviceAccount ? service : users).add(session);
+        }
+        pool = (service.isEmpty() ? users : service).toArray(new VaultSession[0]);
+    }
+
+    private final class VaultSession {
+        private final String id;
+        private final String owner;
+        private final boolean serviceAccount;
+        private final long createdAt = System.currentTimeMillis();
+        // 创建顺序，同一毫秒内创建的会话也能区分先后
+        private final long sequence = sessionSequence.incrementAndGet();
+        // Vault 在每次调用时顺延会话，因此使用即续期
+        private volatile long lastUsedAt = createdAt;
+
+        private VaultSession(String id, String owner, boolean serviceAccount) {
+            this.id = id;
+            this.owner = owner;
+            this.serviceAccount = serviceAccount;
+        }
+
+        private long expiresAt() {
+            return lastUsedAt + idleTimeoutMillis;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt() <= now;
+        }
+    }
+}
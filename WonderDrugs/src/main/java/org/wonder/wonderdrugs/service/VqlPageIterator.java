@@ -0,0 +1,184 @@
+package org.wonder.wonderdrugs.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.wonder.wonderdrugs.exception.VaultApiException;
+
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * 惰性遍历 VQL 分页结果的迭代器
+ * 第一页在调用线程上抓取，只有响应带 next_page 时才把后续页面交给预取线程池，
+ * 调用方处理当前页时下一页已在途；已取回但尚未消费的页面数量受 maxInFlightPages 限制。
+ * 预取任务抓完一页即返回，不会因调用方消费缓慢而占住线程：达到上限时暂停，
+ * 由调用方取走页面后继续；线程池已满时由调用线程自己抓取下一页
+ *
+ * @param <T> 行记录类型
+ */
+class VqlPageIterator<T> implements Iterator<T>, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(VqlPageIterator.class);
+
+    /**
+     * 抓取单页：nextPage 为 null 表示第一页
+     */
+    @FunctionalInterface
+    interface PageFetcher<T> {
+        VqlResponseDetails fetch(String nextPage, Consumer<? super T> rowConsumer);
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final AsyncTaskExecutor executor;
+    private final int maxInFlightPages;
+
+    // 以下状态由 this 保护
+    private final Deque<Page<T>> ready = new ArrayDeque<>();
+    private Future<?> inFlight;
+    private boolean fetching;
+    private String parkedPage;
+    private boolean closed;
+    private int pageCount;
+
+    private boolean started;
+    private Iterator<T> current = Collections.emptyIterator();
+    private boolean finished;
+
+    VqlPageIterator(PageFetcher<T> fetcher, AsyncTaskExecutor executor, int maxInFlightPages) {
+        this.fetcher = fetcher;
+        this.executor = executor;
+        this.maxInFlightPages = Math.max(1, maxInFlightPages);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            started = true;
+            accept(fetchPage(null));
+        }
+        while (!current.hasNext() && !finished) {
+            Page<T> page = takePage();
+            if (page.error != null) {
+                finished = true;
+                throw page.error instanceof VaultApiException vaultError
+                        ? vaultError
+                        : new VaultApiException("Error fetching query page: " + page.error.getMessage());
+            }
+            finished = page.nextPage == null;
+            current = page.rows.iterator();
+        }
+        return current.hasNext();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        parkedPage = null;
+        if (inFlight != null) {
+            inFlight.cancel(true);
+        }
+        ready.clear();
+    }
+
+    private Page<T> takePage() {
+        String inlinePage;
+        synchronized (this) {
+            while (ready.isEmpty() && fetching) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new VaultApiException("Interrupted while waiting for query page");
+                }
+            }
+            if (!ready.isEmpty()) {
+                Page<T> page = ready.poll();
+                resume();
+                return page;
+            }
+            // 预取暂停且线程池无法接收任务，在调用线程上抓取
+            inlinePage = parkedPage;
+            parkedPage = null;
+        }
+        if (inlinePage == null) {
+            throw new VaultApiException("Query page chain ended unexpectedly");
+        }
+        Page<T> page = fetchPage(inlinePage);
+        accept(page);
+        synchronized (this) {
+            // accept 已把该页放入空的缓存；迭代器已关闭时直接返回
+            Page<T> taken = ready.poll();
+            return taken != null ? taken : page;
+        }
+    }
+
+    private Page<T> fetchPage(String nextPage) {
+        try {
+            List<T> rows = new ArrayList<>();
+            VqlResponseDetails details = fetcher.fetch(nextPage, rows::add);
+            return new Page<>(rows, details.hasNextPage() ? details.getNextPage() : null, null);
+        } catch (Exception e) {
+            return new Page<>(List.of(), null, e);
+        }
+    }
+
+    /**
+     * 登记取回的一页，并在未超过上限时继续预取下一页
+     */
+    private synchronized void accept(Page<T> page) {
+        fetching = false;
+        inFlight = null;
+        if (closed) {
+            return;
+        }
+        pageCount++;
+        ready.add(page);
+        if (page.nextPage == null) {
+            logger.debug("Fetched {} query pages", pageCount);
+        } else {
+            parkedPage = page.nextPage;
+            resume();
+        }
+        notifyAll();
+    }
+
+    /**
+     * 有暂停的下一页且缓存未满时提交预取；线程池拒绝时保持暂停，由调用方抓取
+     */
+    private void resume() {
+        if (closed || fetching || parkedPage == null || ready.size() >= maxInFlightPages) {
+            return;
+        }
+        String nextPage = parkedPage;
+        try {
+            inFlight = executor.submit(() -> accept(fetchPage(nextPage)));
+            fetching = true;
+            parkedPage = null;
+        } catch (TaskRejectedException e) {
+            logger.debug("Prefetch pool saturated, next query page will be fetched by the caller");
+        }
+    }
+
+    private static final class Page<T> {
+        private final List<T> rows;
+        private final String nextPage;
+        private final Exception error;
+
+        private Page(List<T> rows, String nextPage, Exception error) {
+            this.rows = rows;
+            this.nextPage = nextPage;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.wonder.wonderdrugs.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * VQL 响应中 responseDetails 部分的分页信息
+ */
+public class VqlResponseDetails {
+    private final int pageSize;
+    private final int pageOffset;
+    private final int size;
+    private final int total;
+    private final String nextPage;
+    private final String previousPage;
+
+    public VqlResponseDetails(int pageSize, int pageOffset, int size, int total,
+                              String nextPage, String previousPage) {
+        this.pageSize = pageSize;
+        this.pageOffset = pageOffset;
+        this.size = size;
+        this.total = total;
+        this.nextPage = nextPage;
+        this.previousPage = previousPage;
+    }
+
+    public static VqlResponseDetails empty() {
+        return new VqlResponseDetails(0, 0, 0, 0, null, null);
+    }
+
+    public static VqlResponseDetails fromNode(JsonNode node) {
+        return new VqlResponseDetails(
+                node.path("pagesize").asInt(),
+                node.path("pageoffset").asInt(),
+                node.path("size").asInt(),
+                node.path("total").asInt(),
+                node.hasNonNull("next_page") ? node.get("next_page").asText() : null,
+                node.hasNonNull("previous_page") ? node.get("previous_page").asText() : null);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getPageOffset() {
+        return pageOffset;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public String getNextPage() {
+        return nextPage;
+    }
+
+    public String getPreviousPage() {
+        return previousPage;
+    }
+
+    public boolean hasNextPage() {
+        return nextPage != null && !nextPage.isEmpty();
+    }
+}
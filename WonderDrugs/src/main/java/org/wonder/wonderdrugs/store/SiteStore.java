@@ -0,0 +1,187 @@
+package org.wonder.wonderdrugs.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.model.Country;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.model.Study;
+import org.wonder.wonderdrugs.store.mapper.CountryMapper;
+import org.wonder.wonderdrugs.store.mapper.SiteMapper;
+import org.wonder.wonderdrugs.store.mapper.StudyMapper;
+import org.wonder.wonderdrugs.sync.StudyListUpdatedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySnapshotUpdatedEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 站点、国家和研究的关系型存储
+ * 监听快照更新事件，以 JDBC 批处理写入变化的行：与上一份已落库快照比较，只 upsert 变化的站点、删除消失的站点；
+ * 无法确定数据库中的版本时整研究重写，并删除版本号更旧的残留行。
+ * 读取方法走 (study_id, country_id) 和 (study_id, status) 索引
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "vault.store.enabled", havingValue = "true")
+public class SiteStore {
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final SiteMapper siteMapper;
+    private final CountryMapper countryMapper;
+    private final StudyMapper studyMapper;
+    private final int batchSize;
+
+    // 每个研究最近一次成功写入的快照版本
+    private final ConcurrentMap<String, Long> storedVersions = new ConcurrentHashMap<>();
+    // 数据库内容可以代表的快照版本；写入期间及写入失败后没有记录
+    private final ConcurrentMap<String, Long> readableVersions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SiteStore(SqlSessionFactory sqlSessionFactory,
+                     SiteMapper siteMapper,
+                     CountryMapper countryMapper,
+                     StudyMapper studyMapper,
+                     @Value("${vault.store.batch-size:500}") int batchSize) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.siteMapper = siteMapper;
+        this.countryMapper = countryMapper;
+        this.studyMapper = studyMapper;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // ================ Read Methods ================
+
+    /**
+     * 按研究查询站点，国家ID和状态为 null 时不作为条件
+     */
+    public List<Site> findSites(String studyId, String countryId, String status) {
+        return siteMapper.find(studyId, countryId, status);
+    }
+
+    /**
+     * 按快照查询站点，仅在数据库内容与该快照版本一致时返回，
+     * 使调用方可以继续用快照的内容哈希作为响应的 ETag 和缓存键
+     * @return 站点；数据库尚未写入该版本、正在写入或写入失败时为 null，调用方应改为过滤快照
+     */
+    public List<Site> findSites(StudySnapshot snapshot, String countryId, String status) {
+        if (!isReadable(snapshot)) {
+            return null;
+        }
+        List<Site> sites = findSites(snapshot.getStudyId(), countryId, status);
+        // 查询期间开始了新的写入时结果可能已属于更新的版本
+        return isReadable(snapshot) ? sites : null;
+    }
+
+    private boolean isReadable(StudySnapshot snapshot) {
+        return Objects.equals(readableVersions.get(snapshot.getStudyId()), snapshot.getVersion());
+    }
+
+    public List<Country> findCountries(String studyId) {
+        return countryMapper.findByStudy(studyId);
+    }
+
+    public List<Study> findStudies() {
+        return studyMapper.findAll();
+    }
+
+    // ================ Write Methods ================
+
+    @EventListener
+    public void onSnapshotUpdated(StudySnapshotUpdatedEvent event) {
+        StudySnapshot snapshot = event.getSnapshot();
+        StudySnapshot previous = event.getPrevious();
+        readableVersions.remove(snapshot.getStudyId());
+        try {
+            boolean incremental = previous != null
+                    && Objects.equals(storedVersions.get(snapshot.getStudyId()), previous.getVersion());
+            saveSnapshot(snapshot, incremental ? previous : null);
+            storedVersions.put(snapshot.getStudyId(), snapshot.getVersion());
+            readableVersions.put(snapshot.getStudyId(), snapshot.getVersion());
+        } catch (Exception e) {
+            // 下一次更新时整研究重写
+            storedVersions.remove(snapshot.getStudyId());
+            log.warn("Error storing snapshot v{} of study {}: {}",
+                    snapshot.getVersion(), snapshot.getStudyId(), e.getMessage());
+        }
+    }
+
+    @EventListener
+    public void onStudyListUpdated(StudyListUpdatedEvent event) {
+        Date now = new Date();
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            StudyMapper mapper = session.getMapper(StudyMapper.class);
+            int pending = 0;
+            for (Study study : event.getStudies()) {
+                mapper.upsert(study, now);
+                if (++pending % batchSize == 0) {
+                    session.flushStatements();
+                }
+            }
+            session.commit();
+        } catch (Exception e) {
+            log.warn("Error storing study list: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param previous 数据库中当前对应的快照；为 null 时重写整个研究
+     */
+    private void saveSnapshot(StudySnapshot snapshot, StudySnapshot previous) {
+        long start = System.currentTimeMillis();
+        String studyId = snapshot.getStudyId();
+        long version = snapshot.getVersion();
+
+        Map<String, Site> previousSites = new HashMap<>();
+        if (previous != null) {
+            for (Site site : previous.getSites()) {
+                previousSites.put(site.getId(), site);
+            }
+        }
+
+        int upserted = 0;
+        try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+            SiteMapper sites = session.getMapper(SiteMapper.class);
+            for (Site site : snapshot.getSites()) {
+                Site old = previousSites.remove(site.getId());
+                if (previous != null && site.equals(old)) {
+                    continue;
+                }
+                sites.upsert(studyId, site, version);
+                if (++upserted % batchSize == 0) {
+                    session.flushStatements();
+                }
+            }
+
+            if (previous == null) {
+                sites.deleteOlderThan(studyId, version);
+            } else if (!previousSites.isEmpty()) {
+                List<String> removed = new ArrayList<>(previousSites.keySet());
+                for (int i = 0; i < removed.size(); i += batchSize) {
+                    sites.deleteByIds(studyId, removed.subList(i, Math.min(i + batchSize, removed.size())));
+                }
+            }
+
+            if (previous == null || !previous.getCountries().equals(snapshot.getCountries())) {
+                CountryMapper countries = session.getMapper(CountryMapper.class);
+                countries.deleteByStudy(studyId);
+                for (Country country : snapshot.getCountries()) {
+                    countries.insert(studyId, country);
+                }
+            }
+
+            session.commit();
+        }
+
+        log.debug("Stored study {} snapshot v{}: {} sites upserted, {} removed in {} ms",
+                studyId, version, upserted, previousSites.size(), System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,32 @@
+package org.wonder.wonderdrugs.store.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.wonder.wonderdrugs.model.Country;
+
+import java.util.List;
+
+@Mapper
+public interface CountryMapper {
+
+    @Insert("""
+            INSERT INTO country (study_id, id, name, code, abbreviation, status, vault_url)
+            VALUES (#{studyId}, #{country.id}, #{country.name}, #{country.code}, #{country.abbreviation},
+                    #{country.status}, #{country.vaultUrl})
+            """)
+    void insert(@Param("studyId") String studyId, @Param("country") Country country);
+
+    @Delete("DELETE FROM country WHERE study_id = #{studyId}")
+    int deleteByStudy(@Param("studyId") String studyId);
+
+    @Select("""
+            SELECT id, name, code, abbreviation, status, vault_url
+            FROM country
+            WHERE study_id = #{studyId}
+            ORDER BY name
+            """)
+    List<Country> findByStudy(@Param("studyId") String studyId);
+}
@@ -0,0 +1,65 @@
+package org.wonder.wonderdrugs.store.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface SiteMapper {
+
+    @Insert("""
+            INSERT INTO site (id, study_id, number, name, status, site_status, status_color,
+                              country, country_id, country_code, address, city, state, latitude, longitude,
+                              vault_url, investigator_id, planned_greenlight_date, actual_siv_date,
+                              days_to_greenlight, snapshot_version)
+            VALUES (#{site.id}, #{studyId}, #{site.number}, #{site.name}, #{site.status}, #{site.siteStatus},
+                    #{site.statusColor}, #{site.country}, #{site.countryId}, #{site.countryCode}, #{site.address},
+                    #{site.city}, #{site.state}, #{site.latitude}, #{site.longitude}, #{site.vaultUrl},
+                    #{site.investigatorId}, #{site.plannedGreenlightDate}, #{site.actualSivDate},
+                    #{site.daysToGreenlight}, #{version})
+            ON DUPLICATE KEY UPDATE
+                study_id = VALUES(study_id), number = VALUES(number), name = VALUES(name),
+                status = VALUES(status), site_status = VALUES(site_status), status_color = VALUES(status_color),
+                country = VALUES(country), country_id = VALUES(country_id), country_code = VALUES(country_code),
+                address = VALUES(address), city = VALUES(city), state = VALUES(state),
+                latitude = VALUES(latitude), longitude = VALUES(longitude), vault_url = VALUES(vault_url),
+                investigator_id = VALUES(investigator_id),
+                planned_greenlight_date = VALUES(planned_greenlight_date),
+                actual_siv_date = VALUES(actual_siv_date), days_to_greenlight = VALUES(days_to_greenlight),
+                snapshot_version = VALUES(snapshot_version)
+            """)
+    void upsert(@Param("studyId") String studyId, @Param("site") Site site, @Param("version") long version);
+
+    @Delete("""
+            <script>
+            DELETE FROM site WHERE study_id = #{studyId} AND id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int deleteByIds(@Param("studyId") String studyId, @Param("ids") Collection<String> ids);
+
+    @Delete("DELETE FROM site WHERE study_id = #{studyId} AND snapshot_version < #{version}")
+    int deleteOlderThan(@Param("studyId") String studyId, @Param("version") long version);
+
+    @Select("""
+            <script>
+            SELECT id, number, name, status, site_status, status_color, country, country_id, country_code,
+                   address, city, state, latitude, longitude, vault_url, investigator_id,
+                   planned_greenlight_date, actual_siv_date, days_to_greenlight
+            FROM site
+            WHERE study_id = #{studyId}
+            <if test="countryId != null"> AND country_id = #{countryId}</if>
+            <if test="status != null"> AND status = #{status}</if>
+            ORDER BY number
+            </script>
+            """)
+    List<Site> find(@Param("studyId") String studyId,
+                    @Param("countryId") String countryId,
+                    @Param("status") String status);
+}
@@ -0,0 +1,27 @@
+package org.wonder.wonderdrugs.store.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.wonder.wonderdrugs.model.Study;
+
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface StudyMapper {
+
+    @Insert("""
+            INSERT INTO study (id, number, name, status, phase, type, vault_url, synced_at)
+            VALUES (#{study.id}, #{study.number}, #{study.name}, #{study.status}, #{study.phase},
+                    #{study.type}, #{study.vaultUrl}, #{syncedAt})
+            ON DUPLICATE KEY UPDATE
+                number = VALUES(number), name = VALUES(name), status = VALUES(status), phase = VALUES(phase),
+                type = VALUES(type), vault_url = VALUES(vault_url), synced_at = VALUES(synced_at)
+            """)
+    void upsert(@Param("study") Study study, @Param("syncedAt") Date syncedAt);
+
+    @Select("SELECT id, number, name, status, phase, type, vault_url FROM study ORDER BY name")
+    List<Study> findAll();
+}
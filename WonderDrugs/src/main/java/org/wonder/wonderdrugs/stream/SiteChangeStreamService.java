@@ -0,0 +1,299 @@
+package org.wonder.wonderdrugs.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.wonder.wonderdrugs.dto.SiteChangesDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.StudyRemovedEvent;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+import org.wonder.wonderdrugs.sync.StudySnapshotUpdatedEvent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 站点变化的 SSE 推送
+ * 快照更新时按ID比较新旧站点（siteStatus、status、坐标），只推送新增、变化和删除的站点。
+ * 每个研究保留最近若干条变化供断线重连时按 Last-Event-ID 补发；补发范围之外的客户端收到 reset 事件，
+ * 应重新拉取完整站点列表。
+ * 每个订阅者有独立的有界发送队列，由推送线程池异步写出；队列满（客户端消费过慢）时关闭连接，
+ * 客户端重连后从补发缓冲区追上。未加载的研究（如未知研究ID）不登记推送流，订阅者收到 reset 后连接结束
+ */
+@Slf4j
+@Service
+public class SiteChangeStreamService {
+    public static final String CHANGES_EVENT = "sites";
+    public static final String RESET_EVENT = "reset";
+
+    private final TaskExecutor executor;
+    private final int replaySize;
+    private final int queueCapacity;
+    private final Duration timeout;
+    private final Duration reconnectDelay;
+    private final ConcurrentMap<String, StudyStream> streams = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SiteChangeStreamService(@Qualifier("siteStreamExecutor") TaskExecutor executor,
+                                   @Value("${vault.stream.replay-size:64}") int replaySize,
+                                   @Value("${vault.stream.queue-capacity:96}") int queueCapacity,
+                                   @Value("${vault.stream.timeout:PT30M}") Duration timeout,
+                                   @Value("${vault.stream.reconnect-delay:PT5S}") Duration reconnectDelay) {
+        this.executor = executor;
+        this.replaySize = replaySize;
+        // 发送队列需容纳完整补发外加连接注释和若干实时事件，否则落后较多的客户端补发时即被关闭，重连后反复溢出
+        this.queueCapacity = Math.max(queueCapacity, replaySize + 8);
+        if (queueCapacity < replaySize + 8) {
+            log.warn("vault.stream.queue-capacity {} cannot hold a full replay of {} events, using {}",
+                    queueCapacity, replaySize, this.queueCapacity);
+        }
+        this.timeout = timeout;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    /**
+     * 订阅研究的站点变化
+     * @param snapshot 研究当前的快照
+     * @param lastEventId 客户端收到的最后一个事件ID（即快照版本），首次连接为 null
+     */
+    public SseEmitter subscribe(StudySnapshot snapshot, String lastEventId) {
+        String studyId = snapshot.getStudyId();
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        if (!snapshot.isLoaded()) {
+            subscriber.offer(SseEmitter.event().reconnectTime(reconnectDelay.toMillis())
+                    .name(RESET_EVENT).data(Map.of("studyId", studyId)));
+            subscriber.closeAfterDrain();
+            return emitter;
+        }
+        StudyStream stream = streams.computeIfAbsent(studyId, id -> new StudyStream(snapshot.getVersion()));
+
+        emitter.onCompletion(() -> stream.subscribers.remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+
+        subscriber.offer(SseEmitter.event().reconnectTime(reconnectDelay.toMillis()).comment("connected"));
+        // 补发与登记在同一把锁内完成，期间到达的变化不会丢失也不会重复
+        synchronized (stream) {
+            Long lastVersion = parseVersion(lastEventId);
+            if (lastVersion != null) {
+                replay(stream, studyId, lastVersion, subscriber);
+            }
+            if (subscriber.closed) {
+                return emitter;
+            }
+            stream.subscribers.add(subscriber);
+        }
+        log.debug("SSE subscriber added for study {} ({} active)", studyId, stream.subscribers.size());
+        return emitter;
+    }
+
+    @EventListener
+    public void onSnapshotUpdated(StudySnapshotUpdatedEvent event) {
+        StudySnapshot snapshot = event.getSnapshot();
+        StudySnapshot previous = event.getPrevious();
+        StudyStream stream = streams.get(snapshot.getStudyId());
+        // 从未被订阅的研究不计算差异
+        if (stream == null || previous == null) {
+            return;
+        }
+        SiteChangesDTO changes = diff(previous, snapshot);
+        synchronized (stream) {
+            stream.latestVersion = snapshot.getVersion();
+            if (changes.getAdded().isEmpty() && changes.getChanged().isEmpty() && changes.getRemoved().isEmpty()) {
+                return;
+            }
+            stream.replay.addLast(changes);
+            while (stream.replay.size() > replaySize) {
+                stream.coveredSince = stream.replay.removeFirst().getVersion();
+            }
+            for (Subscriber subscriber : stream.subscribers) {
+                subscriber.offer(changesEvent(changes));
+            }
+        }
+        log.debug("Pushed site changes for study {} v{}: {} added, {} changed, {} removed to {} subscribers",
+                snapshot.getStudyId(), snapshot.getVersion(), changes.getAdded().size(),
+                changes.getChanged().size(), changes.getRemoved().size(), stream.subscribers.size());
+    }
+
+    @EventListener
+    public void onStudyRemoved(StudyRemovedEvent event) {
+        StudyStream stream = streams.remove(event.getStudyId());
+        if (stream != null) {
+            stream.subscribers.forEach(Subscriber::close);
+        }
+    }
+
+    /**
+     * 心跳，防止代理关闭空闲连接，同时及时发现已断开的客户端
+     */
+    @Scheduled(fixedDelayString = "${vault.stream.heartbeat:PT15S}",
+            initialDelayString = "${vault.stream.heartbeat:PT15S}")
+    public void heartbeat() {
+        for (StudyStream stream : streams.values()) {
+            for (Subscriber subscriber : stream.subscribers) {
+                subscriber.offer(SseEmitter.event().comment("heartbeat"));
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return streams.values().stream().mapToInt(stream -> stream.subscribers.size()).sum();
+    }
+
+    private void replay(StudyStream stream, String studyId, long lastVersion, Subscriber subscriber) {
+        if (lastVersion < stream.coveredSince || lastVersion > stream.latestVersion) {
+            // 客户端错过的变化已不在缓冲区中，或事件ID来自服务重启前，只能重新拉取全量
+            subscriber.offer(SseEmitter.event().name(RESET_EVENT).data(Map.of("studyId", studyId)));
+            return;
+        }
+        long pending = stream.replay.stream().filter(changes -> changes.getVersion() > lastVersion).count();
+        if (pending >= subscriber.queue.remainingCapacity()) {
+            // 补发放不进发送队列，与其溢出关闭连接不如让客户端重新拉取全量
+            subscriber.offer(SseEmitter.event().name(RESET_EVENT).data(Map.of("studyId", studyId)));
+            return;
+        }
+        for (SiteChangesDTO changes : stream.replay) {
+            if (changes.getVersion() > lastVersion) {
+                subscriber.offer(changesEvent(changes));
+            }
+        }
+    }
+
+    private static SseEmitter.SseEventBuilder changesEvent(SiteChangesDTO changes) {
+        return SseEmitter.event()
+                .id(Long.toString(changes.getVersion()))
+                .name(CHANGES_EVENT)
+                .data(changes, MediaType.APPLICATION_JSON);
+    }
+
+    private static SiteChangesDTO diff(StudySnapshot previous, StudySnapshot snapshot) {
+        Map<String, Site> before = new HashMap<>(previous.getSites().size() * 2);
+        for (Site site : previous.getSites()) {
+            before.put(site.getId(), site);
+        }
+        List<Site> added = new ArrayList<>();
+        List<Site> changed = new ArrayList<>();
+        for (Site site : snapshot.getSites()) {
+            Site old = before.remove(site.getId());
+            if (old == null) {
+                added.add(site);
+            } else if (!Objects.equals(old.getSiteStatus(), site.getSiteStatus())
+                    || !Objects.equals(old.getStatus(), site.getStatus())
+                    || Double.compare(old.getLatitude(), site.getLatitude()) != 0
+                    || Double.compare(old.getLongitude(), site.getLongitude()) != 0) {
+                changed.add(site);
+            }
+        }
+        return SiteChangesDTO.builder()
+                .studyId(snapshot.getStudyId())
+                .version(snapshot.getVersion())
+                .previousVersion(previous.getVersion())
+                .added(added)
+                .changed(changed)
+                .removed(new ArrayList<>(before.keySet()))
+                .build();
+    }
+
+    private static Long parseVersion(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class StudyStream {
+        private final Deque<SiteChangesDTO> replay = new ArrayDeque<>();
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        // 此版本之后的所有变化都在补发缓冲区中（没有变化的刷新不产生事件）
+        private long coveredSince;
+        private long latestVersion;
+
+        private StudyStream(long version) {
+            this.coveredSince = version;
+            this.latestVersion = version;
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        private volatile boolean closeWhenDrained;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                log.warn("SSE subscriber is too slow ({} queued events), closing its stream", queue.size());
+                close();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("SSE subscriber disconnected: {}", e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()) {
+                scheduleDrain();
+            } else if (closeWhenDrained) {
+                close();
+            }
+        }
+
+        /**
+         * 已排队的事件写出后结束连接
+         */
+        private void closeAfterDrain() {
+            closeWhenDrained = true;
+            scheduleDrain();
+        }
+
+        private void close() {
+            if (!closed) {
+                closed = true;
+                queue.clear();
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.wonder.wonderdrugs.sync;
+
+import org.wonder.wonderdrugs.model.Country;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.model.Study;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 快照的紧凑二进制编码
+ * <pre>
+ * magic(int) formatVersion(short) kind(byte)
+ * stringCount(int) { length(int) utf8Bytes }*
+ * body
+ * </pre>
+ * 所有字符串（包括重复度很高的国家、状态、颜色）只在字符串表中出现一次，body 中以 int 下标引用，-1 表示 null
+ */
+final class SnapshotCodec {
+    private static final int MAGIC = 0x57445353; // "WDSS"
+    private static final short FORMAT_VERSION = 1;
+    private static final byte KIND_STUDY = 1;
+    private static final byte KIND_STUDIES = 2;
+
+    private static final long NULL_DATE = Long.MIN_VALUE;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    private SnapshotCodec() {
+    }
+
+    // ================ Encoding ================
+
+    static byte[] encodeStudy(StudySnapshot snapshot) throws IOException {
+        Writer writer = new Writer();
+        writer.string(snapshot.getStudyId());
+        writer.out.writeLong(snapshot.getVersion());
+        writer.out.writeLong(snapshot.getRefreshedAt());
+        writer.out.writeLong(snapshot.getFullSyncAt());
+        writer.string(snapshot.getHighWaterMark());
+
+        writer.out.writeInt(snapshot.getStatusColors().size());
+        for (Map.Entry<String, String> entry : snapshot.getStatusColors().entrySet()) {
+            writer.string(entry.getKey());
+            writer.string(entry.getValue());
+        }
+
+        writer.out.writeInt(snapshot.getCountries().size());
+        for (Country country : snapshot.getCountries()) {
+            writer.string(country.getId());
+            writer.string(country.getName());
+            writer.string(country.getCode());
+            writer.string(country.getAbbreviation());
+            writer.string(country.getStatus());
+            writer.string(country.getVaultUrl());
+        }
+
+        writer.out.writeInt(snapshot.getSites().size());
+        for (Site site : snapshot.getSites()) {
+            writer.string(site.getId());
+            writer.string(site.getNumber());
+            writer.string(site.getName());
+            writer.string(site.getStatus());
+            writer.string(site.getSiteStatus());
+            writer.string(site.getStatusColor());
+            writer.string(site.getCountry());
+            writer.string(site.getCountryId());
+            writer.string(site.getCountryCode());
+            writer.string(site.getAddress());
+            writer.string(site.getCity());
+            writer.string(site.getState());
+            writer.out.writeDouble(site.getLatitude());
+            writer.out.writeDouble(site.getLongitude());
+            writer.string(site.getVaultUrl());
+            writer.string(site.getInvestigatorId());
+            writer.date(site.getPlannedGreenlightDate());
+            writer.date(site.getActualSivDate());
+            writer.out.writeInt(site.getDaysToGreenlight() != null ? site.getDaysToGreenlight() : NULL_INT);
+        }
+        return writer.toBytes(KIND_STUDY);
+    }
+
+    static byte[] encodeStudies(StudyListSnapshot snapshot) throws IOException {
+        Writer writer = new Writer();
+        writer.out.writeLong(snapshot.getRefreshedAt());
+        writer.out.writeInt(snapshot.getStudies().size());
+        for (Study study : snapshot.getStudies()) {
+            writer.string(study.getId());
+            writer.string(study.getNumber());
+            writer.string(study.getName());
+            writer.string(study.getStatus());
+            writer.string(study.getPhase());
+            writer.string(study.getType());
+            writer.string(study.getVaultUrl());
+        }
+        return writer.toBytes(KIND_STUDIES);
+    }
+
+    // ================ Decoding ================
+
+    static StudySnapshot decodeStudy(ByteBuffer buffer) {
+        Reader reader = new Reader(buffer, KIND_STUDY);
+        String studyId = reader.string();
+        long version = buffer.getLong();
+        long refreshedAt = buffer.getLong();
+        long fullSyncAt = buffer.getLong();
+        String highWaterMark = reader.string();
+
+        int colorCount = buffer.getInt();
+        Map<String, String> statusColors = new HashMap<>(colorCount * 2);
+        for (int i = 0; i < colorCount; i++) {
+            statusColors.put(reader.string(), reader.string());
+        }
+
+        int countryCount = buffer.getInt();
+        List<Country> countries = new ArrayList<>(countryCount);
+        for (int i = 0; i < countryCount; i++) {
+            Country country = new Country();
+            country.setId(reader.string());
+            country.setName(reader.string());
+            country.setCode(reader.string());
+            country.setAbbreviation(reader.string());
+            country.setStatus(reader.string());
+            country.setVaultUrl(reader.string());
+            countries.add(country);
+        }
+
+        int siteCount = buffer.getInt();
+        List<Site> sites = new ArrayList<>(siteCount);
+        for (int i = 0; i < siteCount; i++) {
+            Site site = new Site();
+            site.setId(reader.string());
+            site.setNumber(reader.string());
+            site.setName(reader.string());
+            site.setStatus(reader.string());
+            site.setSiteStatus(reader.string());
+            site.setStatusColor(reader.string());
+            site.setCountry(reader.string());
+            site.setCountryId(reader.string());
+            site.setCountryCode(reader.string());
+            site.setAddress(reader.string());
+            site.setCity(reader.string());
+            site.setState(reader.string());
+            site.setLatitude(buffer.getDouble());
+            site.setLongitude(buffer.getDouble());
+            site.setVaultUrl(reader.string());
+            site.setInvestigatorId(reader.string());
+            site.setPlannedGreenlightDate(reader.date());
+            site.setActualSivDate(reader.date());
+            int days = buffer.getInt();
+            site.setDaysToGreenlight(days != NULL_INT ? days : null);
+            sites.add(site);
+        }
+
+        return new StudySnapshot(studyId, sites, countries, statusColors, version,
+                refreshedAt, fullSyncAt, highWaterMark);
+    }
+
+    static StudyListSnapshot decodeStudies(ByteBuffer buffer) {
+        Reader reader = new Reader(buffer, KIND_STUDIES);
+        long refreshedAt = buffer.getLong();
+        int count = buffer.getInt();
+        List<Study> studies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Study study = new Study();
+            study.setId(reader.string());
+            study.setNumber(reader.string());
+            study.setName(reader.string());
+            study.setStatus(reader.string());
+            study.setPhase(reader.string());
+            study.setType(reader.string());
+            study.setVaultUrl(reader.string());
+            studies.add(study);
+        }
+        return new StudyListSnapshot(studies, refreshedAt);
+    }
+
+    // ================ Helpers ================
+
+    private static final class Writer {
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+        private final DataOutputStream out = new DataOutputStream(body);
+
+        private void string(String value) throws IOException {
+            out.writeInt(value == null ? -1 : strings.computeIfAbsent(value, v -> strings.size()));
+        }
+
+        private void date(Date value) throws IOException {
+            out.writeLong(value == null ? NULL_DATE : value.getTime());
+        }
+
+        private byte[] toBytes(byte kind) throws IOException {
+            ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() + strings.size() * 16 + 16);
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeShort(FORMAT_VERSION);
+            header.writeByte(kind);
+            header.writeInt(strings.size());
+            for (String value : strings.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                header.writeInt(bytes.length);
+                header.write(bytes);
+            }
+            body.writeTo(file);
+            return file.toByteArray();
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        private Reader(ByteBuffer buffer, byte expectedKind) {
+            this.buffer = buffer;
+            if (buffer.getInt() != MAGIC) {
+                throw new IllegalStateException("Not a snapshot file");
+            }
+            short formatVersion = buffer.getShort();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported snapshot format version " + formatVersion);
+            }
+            if (buffer.get() != expectedKind) {
+                throw new IllegalStateException("Unexpected snapshot kind");
+            }
+
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        private String string() {
+            int index = buffer.getInt();
+            return index < 0 ? null : strings[index];
+        }
+
+        private Date date() {
+            long time = buffer.getLong();
+            return time == NULL_DATE ? null : new Date(time);
+        }
+    }
+}
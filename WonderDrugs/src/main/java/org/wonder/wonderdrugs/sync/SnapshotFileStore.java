@@ -0,0 +1,178 @@
+package org.wonder.wonderdrugs.sync;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 快照的磁盘持久化
+ * 每次成功刷新后把快照写入临时文件并刷盘再原子替换，启动时读入堆内存解码
+ * （不使用内存映射：映射在 GC 回收前不会释放，Windows 上会导致文件无法被替换），
+ * 使服务重启后立即可用，并在 Vault 不可用时继续提供最后一份有效数据
+ */
+@Slf4j
+@Component
+public class SnapshotFileStore {
+    private static final String STUDY_PREFIX = "study-";
+    private static final String SUFFIX = ".snap";
+    private static final String STUDIES_FILE = "studies" + SUFFIX;
+    private static final String HEALTH_PREFIX = "health-";
+    private static final String HEALTH_SUFFIX = ".hist";
+
+    private final boolean enabled;
+    private final Path directory;
+
+    @Autowired
+    public SnapshotFileStore(@Value("${vault.snapshot.enabled:true}") boolean enabled,
+                             @Value("${vault.snapshot.dir:data/snapshots}") String directory) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+    }
+
+    public void saveStudy(StudySnapshot snapshot) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            write(directory.resolve(STUDY_PREFIX + fileSafe(snapshot.getStudyId()) + SUFFIX),
+                    SnapshotCodec.encodeStudy(snapshot));
+        } catch (IOException e) {
+            log.warn("Error writing snapshot for study {}: {}", snapshot.getStudyId(), e.getMessage());
+        }
+    }
+
+    void saveStudies(StudyListSnapshot snapshot) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            write(directory.resolve(STUDIES_FILE), SnapshotCodec.encodeStudies(snapshot));
+        } catch (IOException e) {
+            log.warn("Error writing studies snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除研究的快照和健康评分历史文件
+     */
+    public void deleteStudy(String studyId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(STUDY_PREFIX + fileSafe(studyId) + SUFFIX));
+            Files.deleteIfExists(directory.resolve(HEALTH_PREFIX + fileSafe(studyId) + HEALTH_SUFFIX));
+        } catch (IOException e) {
+            log.warn("Error deleting files of study {}: {}", studyId, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取磁盘上的全部研究快照；损坏或格式不兼容的文件被跳过
+     */
+    public List<StudySnapshot> readStudies() {
+        List<StudySnapshot> snapshots = new ArrayList<>();
+        if (!enabled || !Files.isDirectory(directory)) {
+            return snapshots;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> {
+                        String name = file.getFileName().toString();
+                        return name.startsWith(STUDY_PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .forEach(file -> {
+                        try {
+                            snapshots.add(SnapshotCodec.decodeStudy(read(file)));
+                        } catch (Exception e) {
+                            log.warn("Skipping unreadable snapshot {}: {}", file, e.getMessage());
+                        }
+                    });
+        } catch (IOException e) {
+            log.warn("Error listing snapshot directory {}: {}", directory, e.getMessage());
+        }
+        return snapshots;
+    }
+
+    StudyListSnapshot readStudyList() {
+        Path file = directory.resolve(STUDIES_FILE);
+        if (!enabled || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return SnapshotCodec.decodeStudies(read(file));
+        } catch (Exception e) {
+            log.warn("Skipping unreadable studies snapshot: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存研究的健康评分历史（编码由调用方负责）
+     */
+    public void saveHealthHistory(String studyId, byte[] bytes) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            write(directory.resolve(HEALTH_PREFIX + fileSafe(studyId) + HEALTH_SUFFIX), bytes);
+        } catch (IOException e) {
+            log.warn("Error writing health history for study {}: {}", studyId, e.getMessage());
+        }
+    }
+
+    /**
+     * @return 健康评分历史文件内容，不存在或不可读时为 null
+     */
+    public ByteBuffer readHealthHistory(String studyId) {
+        Path file = directory.resolve(HEALTH_PREFIX + fileSafe(studyId) + HEALTH_SUFFIX);
+        if (!enabled || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return read(file);
+        } catch (IOException e) {
+            log.warn("Error reading health history for study {}: {}", studyId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static ByteBuffer read(Path file) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    private void write(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                // 先落盘再替换，避免断电后留下长度正确但内容为空的快照
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String fileSafe(String studyId) {
+        return studyId.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+}
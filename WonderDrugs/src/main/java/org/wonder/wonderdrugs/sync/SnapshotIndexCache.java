@@ -0,0 +1,64 @@
+package org.wonder.wonderdrugs.sync;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 按研究保存由快照派生的只读索引，快照版本变化时重建；
+ * 未加载的占位快照（如未知研究）只构建不保存
+ *
+ * @param <T> 索引类型
+ */
+@Slf4j
+public final class SnapshotIndexCache<T> {
+    private final String name;
+    private final Function<StudySnapshot, T> builder;
+    private final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    public SnapshotIndexCache(String name, Function<StudySnapshot, T> builder) {
+        this.name = name;
+        this.builder = builder;
+    }
+
+    public T get(StudySnapshot snapshot) {
+        if (!snapshot.isLoaded()) {
+            return builder.apply(snapshot);
+        }
+        Entry<T> entry = entries.get(snapshot.getStudyId());
+        if (entry != null && entry.version == snapshot.getVersion()) {
+            return entry.index;
+        }
+        return entries.compute(snapshot.getStudyId(), (id, current) -> {
+            if (current != null && current.version >= snapshot.getVersion()) {
+                return current;
+            }
+            long start = System.currentTimeMillis();
+            T index = builder.apply(snapshot);
+            log.debug("Built {} index for study {} v{} ({} sites) in {} ms", name, id,
+                    snapshot.getVersion(), snapshot.getSites().size(), System.currentTimeMillis() - start);
+            return new Entry<>(snapshot.getVersion(), index);
+        }).index;
+    }
+
+    /**
+     * 研究被移除时丢弃其索引
+     */
+    public void remove(String studyId) {
+        if (entries.remove(studyId) != null) {
+            log.debug("Dropped {} index for removed study {}", name, studyId);
+        }
+    }
+
+    private static final class Entry<T> {
+        private final long version;
+        private final T index;
+
+        private Entry(long version, T index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.wonder.wonderdrugs.sync;
+
+import org.wonder.wonderdrugs.cache.ContentHash;
+import org.wonder.wonderdrugs.model.Study;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 研究列表的不可变快照
+ */
+final class StudyListSnapshot {
+    private final List<Study> studies;
+    private final long refreshedAt;
+    private final boolean stale;
+    private final long contentHash;
+    private final Set<String> studyIds;
+
+    StudyListSnapshot(List<Study> studies, long refreshedAt) {
+        this(studies, refreshedAt, false);
+    }
+
+    private StudyListSnapshot(List<Study> studies, long refreshedAt, boolean stale) {
+        this.studies = List.copyOf(studies);
+        this.refreshedAt = refreshedAt;
+        this.stale = stale;
+        this.contentHash = ContentHash.of(this.studies);
+        this.studyIds = this.studies.stream()
+                .map(Study::getId)
+                .filter(id -> id != null)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    StudyListSnapshot asStale() {
+        return stale ? this : new StudyListSnapshot(studies, refreshedAt, true);
+    }
+
+    List<Study> getStudies() {
+        return studies;
+    }
+
+    boolean contains(String studyId) {
+        return studyIds.contains(studyId);
+    }
+
+    long getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    long getContentHash() {
+        return contentHash;
+    }
+
+    boolean isStale() {
+        return stale;
+    }
+}
@@ -0,0 +1,20 @@
+package org.wonder.wonderdrugs.sync;
+
+import org.wonder.wonderdrugs.model.Study;
+
+import java.util.List;
+
+/**
+ * 研究列表刷新成功后发布的事件
+ */
+public class StudyListUpdatedEvent {
+    private final List<Study> studies;
+
+    public StudyListUpdatedEvent(List<Study> studies) {
+        this.studies = studies;
+    }
+
+    public List<Study> getStudies() {
+        return studies;
+    }
+}
@@ -0,0 +1,17 @@
+package org.wonder.wonderdrugs.sync;
+
+/**
+ * 研究不再出现在 Vault 研究列表中、其快照被移出同步时发布的事件，
+ * 按研究保存状态的服务应随之释放该研究的数据
+ */
+public class StudyRemovedEvent {
+    private final String studyId;
+
+    public StudyRemovedEvent(String studyId) {
+        this.studyId = studyId;
+    }
+
+    public String getStudyId() {
+        return studyId;
+    }
+}
@@ -0,0 +1,135 @@
+package org.wonder.wonderdrugs.sync;
+
+import org.wonder.wonderdrugs.cache.ContentHash;
+import org.wonder.wonderdrugs.model.Country;
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个研究的不可变内存快照
+ * 后台同步生成新快照后整体替换旧快照，读取方拿到的始终是一份完整一致的数据；
+ * 其中的模型对象只能读取，不得修改。从磁盘恢复或刷新失败后的快照标记为过期（stale），
+ * 接口仍然返回它，但会告知调用方数据可能不是最新的
+ */
+public final class StudySnapshot {
+    private final String studyId;
+    private final List<Site> sites;
+    private final List<Country> countries;
+    private final Map<String, String> statusColors;
+    private final long version;
+    private final long refreshedAt;
+    private final long fullSyncAt;
+    private final String highWaterMark;
+    private final boolean stale;
+
+    // 内容指纹在第一次读取时计算，0 表示尚未计算
+    private volatile long sitesHash;
+    private volatile long countriesHash;
+
+    public StudySnapshot(String studyId, List<Site> sites, List<Country> countries,
+                         Map<String, String> statusColors, long version, long refreshedAt,
+                         long fullSyncAt, String highWaterMark) {
+        this(studyId, sites, countries, statusColors, version, refreshedAt, fullSyncAt, highWaterMark, false);
+    }
+
+    private StudySnapshot(String studyId, List<Site> sites, List<Country> countries,
+                          Map<String, String> statusColors, long version, long refreshedAt,
+                          long fullSyncAt, String highWaterMark, boolean stale) {
+        this.studyId = studyId;
+        this.sites = List.copyOf(sites);
+        this.countries = List.copyOf(countries);
+        this.statusColors = Map.copyOf(statusColors);
+        this.version = version;
+        this.refreshedAt = refreshedAt;
+        this.fullSyncAt = fullSyncAt;
+        this.highWaterMark = highWaterMark;
+        this.stale = stale;
+    }
+
+    /**
+     * @return 数据相同但标记为过期的副本
+     */
+    public StudySnapshot asStale() {
+        return stale ? this : new StudySnapshot(studyId, sites, countries, statusColors, version,
+                refreshedAt, fullSyncAt, highWaterMark, true);
+    }
+
+    /**
+     * @return 站点列表的内容指纹，内容相同的快照在任何节点上都相同
+     */
+    public long getSitesHash() {
+        long hash = sitesHash;
+        if (hash == 0) {
+            hash = ContentHash.of(sites);
+            sitesHash = hash;
+        }
+        return hash;
+    }
+
+    public long getCountriesHash() {
+        long hash = countriesHash;
+        if (hash == 0) {
+            hash = ContentHash.of(countries);
+            countriesHash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * 尚未成功加载时返回的空快照，不会被保存
+     */
+    public static StudySnapshot empty(String studyId) {
+        return new StudySnapshot(studyId, List.of(), List.of(), Map.of(), 0L, 0L, 0L, null);
+    }
+
+    public String getStudyId() {
+        return studyId;
+    }
+
+    public List<Site> getSites() {
+        return sites;
+    }
+
+    public List<Country> getCountries() {
+        return countries;
+    }
+
+    public Map<String, String> getStatusColors() {
+        return statusColors;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getRefreshedAt() {
+        return refreshedAt;
+    }
+
+    /**
+     * @return 最近一次全量同步（对账）的时间
+     */
+    public long getFullSyncAt() {
+        return fullSyncAt;
+    }
+
+    /**
+     * @return 已同步站点中最大的 modified_date__v，增量同步从这里继续
+     */
+    public String getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * @return 是否是成功加载过的快照；{@link #empty} 返回的占位快照为 false，不应据此登记按研究保存的状态
+     */
+    public boolean isLoaded() {
+        return version > 0;
+    }
+}
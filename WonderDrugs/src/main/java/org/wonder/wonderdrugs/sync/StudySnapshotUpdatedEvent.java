@@ -0,0 +1,60 @@
+package org.wonder.wonderdrugs.sync;
+
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.List;
+
+/**
+ * 研究快照版本变化时发布的事件
+ * 监听器在同步线程上执行，应尽快返回且不得抛出异常影响同步
+ */
+public class StudySnapshotUpdatedEvent {
+    private final StudySnapshot snapshot;
+    private final StudySnapshot previous;
+    private final List<Site> upsertedSites;
+    private final List<String> removedSiteIds;
+
+    /**
+     * 全量刷新：变化的站点未知
+     */
+    public StudySnapshotUpdatedEvent(StudySnapshot snapshot, StudySnapshot previous) {
+        this(snapshot, previous, null, null);
+    }
+
+    /**
+     * 增量刷新：相对 previous 新增或修改的站点，以及删除的站点ID
+     */
+    public StudySnapshotUpdatedEvent(StudySnapshot snapshot, StudySnapshot previous,
+                                     List<Site> upsertedSites, List<String> removedSiteIds) {
+        this.snapshot = snapshot;
+        this.previous = previous;
+        this.upsertedSites = upsertedSites;
+        this.removedSiteIds = removedSiteIds;
+    }
+
+    public StudySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return 被替换的快照，研究第一次加载时为 null
+     */
+    public StudySnapshot getPrevious() {
+        return previous;
+    }
+
+    /**
+     * @return 是否携带相对 previous 的站点变化；为 false 时监听器需要自行比较两个快照
+     */
+    public boolean hasDelta() {
+        return upsertedSites != null && previous != null;
+    }
+
+    public List<Site> getUpsertedSites() {
+        return upsertedSites;
+    }
+
+    public List<String> getRemovedSiteIds() {
+        return removedSiteIds;
+    }
+}
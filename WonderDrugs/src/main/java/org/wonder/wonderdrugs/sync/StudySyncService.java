@@ -0,0 +1,397 @@
+package org.wonder.wonderdrugs.sync;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.wonder.wonderdrugs.cache.SingleFlight;
+import org.wonder.wonderdrugs.dto.CoalescingStatsDTO;
+import org.wonder.wonderdrugs.dto.SnapshotStatusDTO;
+import org.wonder.wonderdrugs.model.Country;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.model.Study;
+import org.wonder.wonderdrugs.service.SiteLoadResult;
+import org.wonder.wonderdrugs.service.SiteService;
+import org.wonder.wonderdrugs.service.StatusColorService;
+import org.wonder.wonderdrugs.service.StudyService;
+import org.wonder.wonderdrugs.service.VaultService;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 研究数据后台同步引擎
+ * 定期从 Vault 拉取研究列表以及每个研究的站点、国家和颜色，生成不可变快照并整体替换；
+ * 接口只读内存快照，用户数量不再影响 Vault 调用量。研究列表中的研究在第一次被访问时加入同步列表，
+ * 列表之外的ID不会访问 Vault 也不会被登记；研究从列表中消失时其快照随之移除。
+ * 启用增量同步时，计划刷新只拉取 modified_date__v 不早于高水位的站点并合并进现有集合，
+ * 再按对账间隔执行全量同步以发现被删除的站点。
+ * 每次成功刷新后快照写入磁盘，启动时先恢复磁盘快照再后台刷新；
+ * 刷新失败时继续提供上一份快照并标记为过期
+ */
+@Slf4j
+@Service
+public class StudySyncService {
+
+    private final SiteService siteService;
+    private final StudyService studyService;
+    private final StatusColorService statusColorService;
+    private final VaultService vaultService;
+    private final SnapshotFileStore fileStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Environment environment;
+    private final Duration defaultInterval;
+    private final Duration studiesInterval;
+    private final boolean incremental;
+    private final Duration reconcileInterval;
+
+    // 研究列表在 lastAttempts 中使用的键，不会与研究ID冲突
+    private static final String STUDIES_KEY = "$studies";
+
+    private final ConcurrentMap<String, StudySnapshot> snapshots = new ConcurrentHashMap<>();
+    // 最近一次计划刷新的开始时间，失败的研究同样按间隔重试而不是每个调度周期都访问 Vault
+    private final ConcurrentMap<String, Long> lastAttempts = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final SingleFlight<String, StudySnapshot> refreshFlights = new SingleFlight<>("study-refresh");
+    private final SingleFlight<String, StudyListSnapshot> studiesFlight = new SingleFlight<>("studies-refresh");
+
+    private volatile StudyListSnapshot studies;
+
+    @Autowired
+    public StudySyncService(SiteService siteService,
+                            StudyService studyService,
+                            StatusColorService statusColorService,
+                            VaultService vaultService,
+                            SnapshotFileStore fileStore,
+                            ApplicationEventPublisher eventPublisher,
+                            Environment environment,
+                            @Value("${vault.sync.default-interval:PT5M}") Duration defaultInterval,
+                            @Value("${vault.sync.studies-interval:PT15M}") Duration studiesInterval,
+                            @Value("${vault.sync.incremental:true}") boolean incremental,
+                            @Value("${vault.sync.reconcile-interval:PT1H}") Duration reconcileInterval) {
+        this.siteService = siteService;
+        this.studyService = studyService;
+        this.statusColorService = statusColorService;
+        this.vaultService = vaultService;
+        this.fileStore = fileStore;
+        this.eventPublisher = eventPublisher;
+        this.environment = environment;
+        this.defaultInterval = defaultInterval;
+        this.studiesInterval = studiesInterval;
+        this.incremental = incremental;
+        this.reconcileInterval = reconcileInterval;
+    }
+
+    /**
+     * 从磁盘恢复上次的快照，标记为过期，使服务重启后无需等待 Vault 即可响应
+     */
+    @PostConstruct
+    public void restore() {
+        for (StudySnapshot snapshot : fileStore.readStudies()) {
+            snapshots.put(snapshot.getStudyId(), snapshot.asStale());
+            versions.accumulateAndGet(snapshot.getVersion(), Math::max);
+        }
+        StudyListSnapshot restoredStudies = fileStore.readStudyList();
+        if (restoredStudies != null) {
+            studies = restoredStudies.asStale();
+        }
+        if (!snapshots.isEmpty() || restoredStudies != null) {
+            log.info("Restored {} study snapshots from disk", snapshots.size());
+        }
+    }
+
+    // ================ Read Methods ================
+
+    /**
+     * 获取研究快照；研究第一次被访问时同步加载并加入后台同步
+     * @return 快照；研究不在研究列表中或首次加载失败时返回不会被保存的空快照
+     */
+    public StudySnapshot getSnapshot(String studyId) {
+        StudySnapshot snapshot = snapshots.get(studyId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (!isKnownStudy(studyId)) {
+            log.debug("Ignoring request for unknown study {}", studyId);
+            return StudySnapshot.empty(studyId);
+        }
+        try {
+            return refresh(studyId);
+        } catch (Exception e) {
+            log.error("Initial load failed for study {}: {}", studyId, e.getMessage());
+            return StudySnapshot.empty(studyId);
+        }
+    }
+
+    public List<Study> getStudies() {
+        StudyListSnapshot current = studies;
+        if (current != null) {
+            return current.getStudies();
+        }
+        try {
+            return refreshStudies();
+        } catch (Exception e) {
+            log.error("Initial load of studies failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * @return 研究是否在研究列表中；列表尚未加载时先同步加载
+     */
+    public boolean isKnownStudy(String studyId) {
+        if (studyId == null) {
+            return false;
+        }
+        if (studies == null) {
+            getStudies();
+        }
+        StudyListSnapshot current = studies;
+        return current != null && current.contains(studyId);
+    }
+
+    /**
+     * @return 研究列表当前是否来自过期快照
+     */
+    public boolean isStudiesStale() {
+        StudyListSnapshot current = studies;
+        return current != null && current.isStale();
+    }
+
+    /**
+     * @return 研究列表的内容指纹；尚未加载时先同步加载
+     */
+    public long getStudiesHash() {
+        StudyListSnapshot current = studies;
+        if (current == null) {
+            getStudies();
+            current = studies;
+        }
+        return current != null ? current.getContentHash() : 0L;
+    }
+
+    public long getStudiesRefreshedAt() {
+        StudyListSnapshot current = studies;
+        return current != null ? current.getRefreshedAt() : 0L;
+    }
+
+    // ================ Refresh Methods ================
+
+    /**
+     * 立即全量刷新研究快照；同一研究的并发刷新只执行一次
+     * @throws RuntimeException 加载失败时抛出，原快照保持不变
+     */
+    public StudySnapshot refresh(String studyId) {
+        return refreshFlights.execute("full:" + studyId, () -> {
+            long start = System.currentTimeMillis();
+
+            // 国家查询先发出，与站点的流式加载重叠执行
+            Supplier<List<Country>> countries = siteService.startLoadCountries(studyId);
+            SiteLoadResult sites = siteService.loadSiteData(studyId, null);
+
+            long now = System.currentTimeMillis();
+            StudySnapshot snapshot = new StudySnapshot(
+                    studyId,
+                    sites.getSites(),
+                    countries.get(),
+                    statusColorService.getColors(),
+                    versions.incrementAndGet(),
+                    now,
+                    now,
+                    sites.getMaxModifiedDate());
+            StudySnapshot previous = snapshots.put(studyId, snapshot);
+            fileStore.saveStudy(snapshot);
+            eventPublisher.publishEvent(new StudySnapshotUpdatedEvent(snapshot, previous));
+
+            log.info("Refreshed study {} snapshot v{} ({} sites, {} countries) in {} ms",
+                    studyId, snapshot.getVersion(), snapshot.getSites().size(),
+                    snapshot.getCountries().size(), System.currentTimeMillis() - start);
+            return snapshot;
+        });
+    }
+
+    /**
+     * 增量刷新：只拉取高水位之后修改的站点，按ID合并进当前快照；
+     * 没有可用的高水位时退化为全量刷新
+     */
+    public StudySnapshot refreshIncremental(String studyId) {
+        StudySnapshot previous = snapshots.get(studyId);
+        if (previous == null || previous.getHighWaterMark() == null) {
+            return refresh(studyId);
+        }
+
+        return refreshFlights.execute("delta:" + studyId, () -> {
+            SiteLoadResult changes = siteService.loadSiteData(studyId, previous.getHighWaterMark());
+            // 在 compute 中与当时的最新快照合并，避免覆盖并发完成的全量刷新
+            StudySnapshot[] base = new StudySnapshot[1];
+            List<Site> upserted = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            StudySnapshot snapshot = snapshots.compute(studyId, (id, current) -> {
+                base[0] = current != null ? current : previous;
+                upserted.clear();
+                removed.clear();
+                return merge(base[0], changes, upserted, removed);
+            });
+            if (snapshot.getVersion() != base[0].getVersion()) {
+                fileStore.saveStudy(snapshot);
+                eventPublisher.publishEvent(new StudySnapshotUpdatedEvent(snapshot, base[0], upserted, removed));
+            }
+            log.debug("Incremental sync of study {}: {} changed rows, snapshot v{}",
+                    studyId, changes.getSites().size() + changes.getSkippedIds().size(), snapshot.getVersion());
+            return snapshot;
+        });
+    }
+
+    /**
+     * @param upserted 收集实际新增或修改的站点
+     * @param removed 收集实际删除的站点ID
+     */
+    private StudySnapshot merge(StudySnapshot current, SiteLoadResult changes,
+                                List<Site> upserted, List<String> removed) {
+        Map<String, Site> sites = new LinkedHashMap<>();
+        for (Site site : current.getSites()) {
+            sites.put(site.getId(), site);
+        }
+
+        boolean changed = false;
+        for (Site site : changes.getSites()) {
+            if (!site.equals(sites.put(site.getId(), site))) {
+                upserted.add(site);
+                changed = true;
+            }
+        }
+        for (String id : changes.getSkippedIds()) {
+            if (sites.remove(id) != null) {
+                removed.add(id);
+                changed = true;
+            }
+        }
+
+        String highWaterMark = maxOf(current.getHighWaterMark(), changes.getMaxModifiedDate());
+        long now = System.currentTimeMillis();
+        if (!changed) {
+            // 数据未变化时保留版本号，只推进刷新时间和高水位
+            return new StudySnapshot(current.getStudyId(), current.getSites(), current.getCountries(),
+                    current.getStatusColors(), current.getVersion(), now, current.getFullSyncAt(), highWaterMark);
+        }
+        return new StudySnapshot(current.getStudyId(), List.copyOf(sites.values()), current.getCountries(),
+                statusColorService.getColors(), versions.incrementAndGet(), now, current.getFullSyncAt(), highWaterMark);
+    }
+
+    public SnapshotStatusDTO forceRefresh(String studyId) {
+        return toStatus(refresh(studyId));
+    }
+
+    public List<Study> refreshStudies() {
+        return studiesFlight.execute("studies", () -> {
+            StudyListSnapshot snapshot = new StudyListSnapshot(
+                    studyService.loadStudies(), System.currentTimeMillis());
+            studies = snapshot;
+            fileStore.saveStudies(snapshot);
+            evictRemovedStudies(snapshot);
+            eventPublisher.publishEvent(new StudyListUpdatedEvent(snapshot.getStudies()));
+            return snapshot;
+        }).getStudies();
+    }
+
+    /**
+     * 已不在研究列表中的研究停止同步，并删除其磁盘快照
+     */
+    private void evictRemovedStudies(StudyListSnapshot current) {
+        for (String studyId : List.copyOf(snapshots.keySet())) {
+            if (!current.contains(studyId) && snapshots.remove(studyId) != null) {
+                lastAttempts.remove(studyId);
+                fileStore.deleteStudy(studyId);
+                eventPublisher.publishEvent(new StudyRemovedEvent(studyId));
+                log.info("Study {} is no longer listed in Vault, removed its snapshot", studyId);
+            }
+        }
+    }
+
+    /**
+     * 调度器定期检查每个已注册研究，按各自的刷新间隔重新同步；
+     * 单个研究失败只记录日志并保留上一份快照
+     */
+    @Scheduled(fixedDelayString = "${vault.sync.tick:PT10S}", initialDelayString = "${vault.sync.tick:PT10S}")
+    public void syncDue() {
+        if (!vaultService.hasActiveSession()) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        StudyListSnapshot currentStudies = studies;
+        if (currentStudies != null && now - Math.max(currentStudies.getRefreshedAt(),
+                lastAttempts.getOrDefault(STUDIES_KEY, 0L)) >= studiesInterval.toMillis()) {
+            lastAttempts.put(STUDIES_KEY, now);
+            try {
+                refreshStudies();
+            } catch (Exception e) {
+                log.warn("Scheduled refresh of studies failed, serving stale list: {}", e.getMessage());
+                studies = currentStudies.asStale();
+            }
+        }
+
+        for (StudySnapshot snapshot : snapshots.values()) {
+            long lastAttempt = Math.max(snapshot.getRefreshedAt(), lastAttempts.getOrDefault(snapshot.getStudyId(), 0L));
+            if (now - lastAttempt < intervalFor(snapshot.getStudyId()).toMillis()) {
+                continue;
+            }
+            lastAttempts.put(snapshot.getStudyId(), now);
+            try {
+                if (incremental && now - snapshot.getFullSyncAt() < reconcileInterval.toMillis()) {
+                    refreshIncremental(snapshot.getStudyId());
+                } else {
+                    refresh(snapshot.getStudyId());
+                }
+            } catch (Exception e) {
+                log.warn("Scheduled refresh of study {} failed, serving stale snapshot: {}",
+                        snapshot.getStudyId(), e.getMessage());
+                snapshots.computeIfPresent(snapshot.getStudyId(), (id, current) -> current.asStale());
+            }
+        }
+    }
+
+    /**
+     * 研究的刷新间隔，可通过 vault.sync.study-intervals.&lt;studyId&gt; 单独配置
+     */
+    private Duration intervalFor(String studyId) {
+        return environment.getProperty("vault.sync.study-intervals." + studyId, Duration.class, defaultInterval);
+    }
+
+    private static String maxOf(String a, String b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.compareTo(b) >= 0 ? a : b;
+    }
+
+    /**
+     * @return 研究刷新和研究列表刷新的请求合并统计
+     */
+    public List<CoalescingStatsDTO> getCoalescingStats() {
+        return List.of(refreshFlights.stats(), studiesFlight.stats());
+    }
+
+    private SnapshotStatusDTO toStatus(StudySnapshot snapshot) {
+        return SnapshotStatusDTO.builder()
+                .studyId(snapshot.getStudyId())
+                .version(snapshot.getVersion())
+                .refreshedAt(snapshot.getRefreshedAt() > 0 ? new Date(snapshot.getRefreshedAt()) : null)
+                .siteCount(snapshot.getSites().size())
+                .countryCount(snapshot.getCountries().size())
+                .stale(snapshot.isStale())
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+-- Site store schema; valid for MySQL 8 and H2 in MODE=MySQL
+
+CREATE TABLE IF NOT EXISTS study (
+    id          VARCHAR(64)  NOT NULL PRIMARY KEY,
+    number      VARCHAR(255),
+    name        VARCHAR(500),
+    status      VARCHAR(100),
+    phase       VARCHAR(100),
+    type        VARCHAR(100),
+    vault_url   VARCHAR(500),
+    synced_at   TIMESTAMP    NULL
+);
+
+CREATE TABLE IF NOT EXISTS country (
+    study_id     VARCHAR(64)  NOT NULL,
+    id           VARCHAR(64)  NOT NULL,
+    name         VARCHAR(255),
+    code         VARCHAR(16),
+    abbreviation VARCHAR(16),
+    status       VARCHAR(100),
+    vault_url    VARCHAR(500),
+    PRIMARY KEY (study_id, id)
+);
+
+CREATE TABLE IF NOT EXISTS site (
+    id                      VARCHAR(64)  NOT NULL PRIMARY KEY,
+    study_id                VARCHAR(64)  NOT NULL,
+    number                  VARCHAR(255),
+    name                    VARCHAR(500),
+    status                  VARCHAR(100),
+    site_status             VARCHAR(100),
+    status_color            VARCHAR(16),
+    country                 VARCHAR(255),
+    country_id              VARCHAR(64),
+    country_code            VARCHAR(16),
+    address                 VARCHAR(1000),
+    city                    VARCHAR(255),
+    state                   VARCHAR(255),
+    latitude                DOUBLE,
+    longitude               DOUBLE,
+    vault_url               VARCHAR(500),
+    investigator_id         VARCHAR(64),
+    planned_greenlight_date TIMESTAMP    NULL,
+    actual_siv_date         TIMESTAMP    NULL,
+    days_to_greenlight      INT          NULL,
+    snapshot_version        BIGINT       NOT NULL,
+    INDEX idx_site_study_country (study_id, country_id),
+    INDEX idx_site_study_status (study_id, status),
+    INDEX idx_site_study_version (study_id, snapshot_version)
+);
@@ -0,0 +1,79 @@
+package org.wonder.wonderdrugs.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.wonder.wonderdrugs.dto.StudyAnalyticsDTO;
+import org.wonder.wonderdrugs.model.Site;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StudyAggregatesTest {
+    private static final String[] SITE_STATUSES = {"active_site__v", "inactive_site__v", "candidate__v", null};
+    private static final String[] COUNTRIES = {"US", "DE", "JP", null};
+
+    @Test
+    void incrementalUpdatesMatchFullRebuild() {
+        Random random = new Random(42);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sites.add(site("s" + i, random));
+        }
+        StudyAggregates aggregates = new StudyAggregates("study", 1, sites);
+
+        for (long version = 2; version < 30; version++) {
+            List<Site> upserted = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int index = random.nextInt(sites.size());
+                if (random.nextInt(4) == 0 && sites.size() > 50) {
+                    Site gone = sites.remove(index);
+                    upserted.removeIf(site -> site.getId().equals(gone.getId()));
+                    removed.add(gone.getId());
+                } else {
+                    Site changed = site(random.nextInt(3) == 0 ? "n" + version + "-" + i : sites.get(index).getId(), random);
+                    sites.removeIf(site -> site.getId().equals(changed.getId()));
+                    sites.add(changed);
+                    upserted.removeIf(site -> site.getId().equals(changed.getId()));
+                    removed.remove(changed.getId());
+                    upserted.add(changed);
+                }
+            }
+            if (version % 2 == 0) {
+                aggregates.apply(version, upserted, removed);
+            } else {
+                aggregates.applyAll(version, new ArrayList<>(sites));
+            }
+            assertThat(aggregates.view()).isEqualTo(rebuilt(sites));
+        }
+    }
+
+    @Test
+    void emptyStudyHasNoGreenlightStatistics() {
+        StudyAnalyticsDTO view = new StudyAggregates("study", 1, List.of()).view();
+
+        assertThat(view.getSiteCount()).isZero();
+        assertThat(view.getByCountry()).isEmpty();
+        assertThat(view.getDaysToGreenlight().getCount()).isZero();
+        assertThat(view.getDaysToGreenlight().getMedian()).isNull();
+    }
+
+    private static StudyAnalyticsDTO rebuilt(List<Site> sites) {
+        return new StudyAggregates("study", 0, sites).view();
+    }
+
+    private static Site site(String id, Random random) {
+        Site site = new Site();
+        site.setId(id);
+        site.setSiteStatus(SITE_STATUSES[random.nextInt(SITE_STATUSES.length)]);
+        site.setStatus(random.nextBoolean() ? "active__v" : "inactive__v");
+        String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+        site.setCountryId(country);
+        site.setCountry(country);
+        site.setCountryCode(country);
+        site.setDaysToGreenlight(random.nextInt(5) == 0 ? null : random.nextInt(120));
+        return site;
+    }
+}
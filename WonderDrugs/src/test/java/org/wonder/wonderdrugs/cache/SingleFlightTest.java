@@ -0,0 +1,48 @@
+package org.wonder.wonderdrugs.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    @Test
+    void coalescedCallersGetIndependentCopies() throws Exception {
+        SingleFlight<String, List<String>> flights = new SingleFlight<>("test", ArrayList::new);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<List<String>> leader = CompletableFuture.supplyAsync(() -> flights.execute("k", () -> {
+            started.countDown();
+            await(release);
+            return new ArrayList<>(List.of("a"));
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<List<String>> follower = CompletableFuture.supplyAsync(() -> flights.execute("k", List::of));
+        while (flights.stats().getCoalesced() == 0) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        List<String> first = leader.get(5, TimeUnit.SECONDS);
+        List<String> second = follower.get(5, TimeUnit.SECONDS);
+        first.add("b");
+
+        assertThat(second).containsExactly("a");
+        assertThat(flights.stats().getExecutions()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.wonder.wonderdrugs.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ETagsTest {
+
+    @Test
+    void distinguishesVariantsThatCollidedUnderStringHashCode() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(ETags.of("sites", 42, "Aa", null)).isNotEqualTo(ETags.of("sites", 42, "BB", null));
+        assertThat(ETags.of("sites", 42, null, null)).isNotEqualTo(ETags.of("sites", 42, "", null));
+        assertThat(ETags.of("sites", 42, "ab", "c")).isNotEqualTo(ETags.of("sites", 42, "a", "bc"));
+        assertThat(ETags.of("sites", 42, "x", null)).isNotEqualTo(ETags.of("sites", 42, null, "x"));
+    }
+
+    @Test
+    void isStableForTheSameVariant() {
+        assertThat(ETags.of("sites", 42, "US", "active")).isEqualTo(ETags.of("sites", 42, "US", "active"))
+                .startsWith("\"sites-").endsWith("\"");
+        assertThat(ETags.of("sites", 42, "US", "active")).isNotEqualTo(ETags.of("sites", 43, "US", "active"));
+        assertThat(ETags.of("sites", 42)).isNotEqualTo(ETags.of("site-columns", 42));
+    }
+
+    @Test
+    void encodesNullAndEmptyDifferently() {
+        assertThat(ETags.variant(null, "")).isEqualTo("~0:");
+        assertThat(ETags.variant("1:a")).isEqualTo("3:1:a");
+    }
+
+    @Test
+    void cacheKeyKeepsTheLiteralVariant() {
+        assertThat(ETags.cacheKey("sites", 42, "Aa", null)).isEqualTo("sites-2a|2:Aa~");
+        assertThat(ETags.cacheKey("sites", 42, "Aa", null)).isNotEqualTo(ETags.cacheKey("sites", 42, "BB", null));
+        assertThat(ETags.cacheKey("sites", 42, "", null)).isNotEqualTo(ETags.cacheKey("sites", 42, null, null));
+    }
+}
@@ -0,0 +1,106 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KdTreeTest {
+
+    @Test
+    void rangeMatchesBruteForce() {
+        Random random = new Random(3);
+        for (int dims : new int[]{2, 3}) {
+            double[] points = randomPoints(random, 2000, dims);
+            KdTree tree = new KdTree(points, dims);
+            for (int trial = 0; trial < 500; trial++) {
+                double[] min = new double[dims];
+                double[] max = new double[dims];
+                for (int d = 0; d < dims; d++) {
+                    double a = random.nextInt(21) - 10;
+                    double b = random.nextInt(21) - 10;
+                    min[d] = Math.min(a, b);
+                    max[d] = Math.max(a, b);
+                }
+                List<Integer> found = new ArrayList<>();
+                tree.range(min, max, found::add);
+
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < points.length / dims; i++) {
+                    if (inside(points, dims, i, min, max)) {
+                        expected.add(i);
+                    }
+                }
+                assertThat(found).containsExactlyInAnyOrderElementsOf(expected);
+            }
+        }
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        Random random = new Random(5);
+        for (int dims : new int[]{2, 3}) {
+            double[] points = randomPoints(random, 1500, dims);
+            KdTree tree = new KdTree(points, dims);
+            for (int trial = 0; trial < 300; trial++) {
+                double[] query = new double[dims];
+                for (int d = 0; d < dims; d++) {
+                    query[d] = random.nextDouble() * 24 - 12;
+                }
+                int k = 1 + random.nextInt(50);
+                int[] found = tree.nearest(query, k, id -> id % 3 != 0);
+
+                double[] expected = IntStream.range(0, points.length / dims)
+                        .filter(id -> id % 3 != 0)
+                        .mapToDouble(id -> distanceSquared(points, dims, id, query))
+                        .sorted()
+                        .limit(k)
+                        .toArray();
+                double[] actual = IntStream.of(found).mapToDouble(id -> distanceSquared(points, dims, id, query)).toArray();
+                assertThat(actual).containsExactly(expected);
+            }
+        }
+    }
+
+    @Test
+    void nearestReturnsEveryMatchingPointWhenKExceedsSize() {
+        double[] points = {0, 0, 1, 1, 2, 2};
+        KdTree tree = new KdTree(points, 2);
+
+        assertThat(tree.nearest(new double[]{0, 0}, 10, id -> true)).containsExactly(0, 1, 2);
+        assertThat(tree.nearest(new double[]{0, 0}, 0, id -> true)).isEmpty();
+        assertThat(new KdTree(new double[0], 2).nearest(new double[]{0, 0}, 5, id -> true)).isEmpty();
+    }
+
+    private static double[] randomPoints(Random random, int n, int dims) {
+        double[] points = new double[n * dims];
+        for (int i = 0; i < points.length; i++) {
+            // 整数坐标产生大量相同取值，覆盖划分时的相等情况
+            points[i] = random.nextInt(21) - 10;
+        }
+        return points;
+    }
+
+    private static boolean inside(double[] points, int dims, int id, double[] min, double[] max) {
+        for (int d = 0; d < dims; d++) {
+            double value = points[id * dims + d];
+            if (value < min[d] || value > max[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double distanceSquared(double[] points, int dims, int id, double[] query) {
+        double sum = 0;
+        for (int d = 0; d < dims; d++) {
+            double diff = points[id * dims + d] - query[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
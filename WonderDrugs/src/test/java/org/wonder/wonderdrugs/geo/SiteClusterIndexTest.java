@@ -0,0 +1,162 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.junit.jupiter.api.Test;
+import org.wonder.wonderdrugs.dto.SiteClusterDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SiteClusterIndexTest {
+    private static final int CELL_BITS = 2;
+
+    @Test
+    void bigMinMatchesBruteForceScan() {
+        Random random = new Random(7);
+        int bits = 5;
+        int size = 1 << bits;
+        for (int trial = 0; trial < 2000; trial++) {
+            int x1 = random.nextInt(size);
+            int x2 = random.nextInt(size);
+            int y1 = random.nextInt(size);
+            int y2 = random.nextInt(size);
+            int minX = Math.min(x1, x2);
+            int maxX = Math.max(x1, x2);
+            int minY = Math.min(y1, y2);
+            int maxY = Math.max(y1, y2);
+
+            long[] inside = new long[(maxX - minX + 1) * (maxY - minY + 1)];
+            int count = 0;
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    inside[count++] = SiteClusterIndex.interleave(x, y);
+                }
+            }
+            Arrays.sort(inside);
+            long zmin = SiteClusterIndex.interleave(minX, minY);
+            long zmax = SiteClusterIndex.interleave(maxX, maxY);
+            assertThat(inside[0]).isEqualTo(zmin);
+            assertThat(inside[inside.length - 1]).isEqualTo(zmax);
+
+            for (long code = zmin + 1; code < zmax; code++) {
+                int at = Arrays.binarySearch(inside, code);
+                if (at >= 0) {
+                    continue;
+                }
+                long expected = inside[-at - 1];
+                assertThat(SiteClusterIndex.bigMin(code, zmin, zmax, bits))
+                        .as("code %d in box x %d..%d y %d..%d", code, minX, maxX, minY, maxY)
+                        .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void viewportClustersMatchBruteForce() {
+        Random random = new Random(11);
+        List<Site> sites = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            double lat = i % 10 == 0 ? (random.nextBoolean() ? 90 : -90) * random.nextDouble() : random.nextDouble() * 170 - 85;
+            double lon = i % 7 == 0 ? (random.nextBoolean() ? 179.99 : -179.99) : random.nextDouble() * 360 - 180;
+            sites.add(site("s" + i, lat, lon));
+        }
+        sites.add(site("missing", Double.NaN, Double.NaN));
+        SiteClusterIndex index = SiteClusterIndex.build(snapshot(sites));
+
+        for (int trial = 0; trial < 2000; trial++) {
+            int zoom = random.nextInt(SiteClusterIndex.MAX_ZOOM + 1);
+            double lat1 = random.nextDouble() * 180 - 90;
+            double lat2 = random.nextDouble() * 180 - 90;
+            BoundingBox bbox = new BoundingBox(random.nextDouble() * 360 - 180, Math.min(lat1, lat2),
+                    random.nextDouble() * 360 - 180, Math.max(lat1, lat2));
+
+            List<SiteClusterDTO> clusters = index.clusters(zoom, bbox);
+            assertThat(total(clusters)).as("zoom %d", zoom).isEqualTo(bruteForce(sites, zoom, bbox));
+        }
+    }
+
+    @Test
+    void antimeridianViewportIncludesBothSides() {
+        List<Site> sites = List.of(site("east", 1, 179.9), site("west", -1, -179.9), site("greenwich", 0, 0));
+        SiteClusterIndex index = SiteClusterIndex.build(snapshot(sites));
+
+        List<SiteClusterDTO> clusters = index.clusters(10, new BoundingBox(179, -10, -179, 10));
+
+        assertThat(clusters).extracting(SiteClusterDTO::getSiteId).containsExactlyInAnyOrder("east", "west");
+    }
+
+    @Test
+    void wideAntimeridianViewportAtLowZoomReturnsEachCellOnce() {
+        List<Site> sites = List.of(site("a", 0, 7), site("b", 0, 8));
+        SiteClusterIndex index = SiteClusterIndex.build(snapshot(sites));
+
+        List<SiteClusterDTO> clusters = index.clusters(0, new BoundingBox(10, -10, 5, 10));
+
+        assertThat(total(clusters)).isEqualTo(2);
+    }
+
+    @Test
+    void sitesBeyondMercatorLimitAreClampedToPolarCells() {
+        List<Site> sites = List.of(site("north", 89.5, 0), site("south", -90, 0));
+        SiteClusterIndex index = SiteClusterIndex.build(snapshot(sites));
+
+        assertThat(index.clusters(18, new BoundingBox(-1, 86, 1, 90)))
+                .extracting(SiteClusterDTO::getSiteId).containsExactly("north");
+        assertThat(index.clusters(18, new BoundingBox(-1, -90, 1, -86)))
+                .extracting(SiteClusterDTO::getSiteId).containsExactly("south");
+    }
+
+    @Test
+    void sitesWithoutCoordinatesAreNotClustered() {
+        List<Site> sites = List.of(site("located", 10, 10), site("missing", Double.NaN, Double.NaN));
+        SiteClusterIndex index = SiteClusterIndex.build(snapshot(sites));
+
+        for (int zoom = 0; zoom <= SiteClusterIndex.MAX_ZOOM; zoom++) {
+            assertThat(index.clusters(zoom, null)).extracting(SiteClusterDTO::getSiteId).containsExactly("located");
+        }
+    }
+
+    private static int bruteForce(List<Site> sites, int zoom, BoundingBox bbox) {
+        int bits = zoom + CELL_BITS;
+        int west = SiteClusterIndex.cellX(bbox.getMinLon(), bits);
+        int east = SiteClusterIndex.cellX(bbox.getMaxLon(), bits);
+        int north = SiteClusterIndex.cellY(bbox.getMaxLat(), bits);
+        int south = SiteClusterIndex.cellY(bbox.getMinLat(), bits);
+        int count = 0;
+        for (Site site : sites) {
+            if (!Double.isFinite(site.getLatitude()) || !Double.isFinite(site.getLongitude())) {
+                continue;
+            }
+            int x = SiteClusterIndex.cellX(site.getLongitude(), bits);
+            int y = SiteClusterIndex.cellY(site.getLatitude(), bits);
+            boolean inX = bbox.crossesAntimeridian() ? x >= west || x <= east : x >= west && x <= east;
+            if (inX && y >= north && y <= south) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int total(List<SiteClusterDTO> clusters) {
+        return clusters.stream().mapToInt(SiteClusterDTO::getCount).sum();
+    }
+
+    private static StudySnapshot snapshot(List<Site> sites) {
+        return new StudySnapshot("study", sites, List.of(), Map.of(), 1, 1, 1, null);
+    }
+
+    private static Site site(String id, double latitude, double longitude) {
+        Site site = new Site();
+        site.setId(id);
+        site.setSiteStatus("active_site__v");
+        site.setLatitude(latitude);
+        site.setLongitude(longitude);
+        return site;
+    }
+}
@@ -0,0 +1,172 @@
+package org.wonder.wonderdrugs.geo;
+
+import org.junit.jupiter.api.Test;
+import org.wonder.wonderdrugs.dto.NearbySiteDTO;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class SiteSpatialIndexTest {
+    private static final double TOLERANCE_KM = 1e-6;
+
+    private final Random random = new Random(13);
+    private final List<Site> sites = randomSites(2000);
+    private final StudySnapshot snapshot = new StudySnapshot("study", sites, List.of(), Map.of(), 1, 1, 1, null);
+    private final SiteSpatialIndex index = SiteSpatialIndex.build(snapshot);
+
+    @Test
+    void withinMatchesBruteForceIncludingAntimeridian() {
+        for (int trial = 0; trial < 500; trial++) {
+            double lat1 = random.nextDouble() * 180 - 90;
+            double lat2 = random.nextDouble() * 180 - 90;
+            BoundingBox bbox = new BoundingBox(random.nextDouble() * 360 - 180, Math.min(lat1, lat2),
+                    random.nextDouble() * 360 - 180, Math.max(lat1, lat2));
+            Predicate<Site> filter = trial % 2 == 0 ? site -> true : site -> "active".equals(site.getStatus());
+
+            List<String> expected = sites.stream()
+                    .filter(site -> located(site) && filter.test(site))
+                    .filter(site -> site.getLatitude() >= bbox.getMinLat() && site.getLatitude() <= bbox.getMaxLat())
+                    .filter(site -> bbox.crossesAntimeridian()
+                            ? site.getLongitude() >= bbox.getMinLon() || site.getLongitude() <= bbox.getMaxLon()
+                            : site.getLongitude() >= bbox.getMinLon() && site.getLongitude() <= bbox.getMaxLon())
+                    .map(Site::getId)
+                    .collect(Collectors.toList());
+
+            assertThat(index.within(bbox, filter)).extracting(Site::getId).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+
+    @Test
+    void nearbyMatchesHaversineBruteForce() {
+        for (int trial = 0; trial < 300; trial++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            double radiusKm = trial % 10 == 0 ? 25_000 : random.nextDouble() * 3000;
+
+            List<Double> expected = sites.stream()
+                    .filter(SiteSpatialIndexTest::located)
+                    .map(site -> haversineKm(lat, lon, site))
+                    .filter(distance -> distance <= radiusKm - TOLERANCE_KM)
+                    .sorted()
+                    .collect(Collectors.toList());
+            List<NearbySiteDTO> found = index.nearby(lat, lon, radiusKm, site -> true);
+
+            assertThat(found).isSortedAccordingTo(Comparator.comparingDouble(NearbySiteDTO::getDistanceKm));
+            assertThat(found).allSatisfy(nearby -> assertThat(nearby.getDistanceKm())
+                    .isCloseTo(haversineKm(lat, lon, nearby.getSite()), within(TOLERANCE_KM)));
+            // 恰好落在半径边界上的站点允许数值误差
+            assertThat(found.size()).isBetween(expected.size(), expected.size() + boundaryCount(lat, lon, radiusKm));
+        }
+    }
+
+    @Test
+    void nearestMatchesHaversineBruteForceAcrossK() {
+        SiteSpatialService service = new SiteSpatialService();
+        for (int k : new int[]{1, 2, 10, 999, 1000}) {
+            for (int trial = 0; trial < 20; trial++) {
+                double lat = random.nextDouble() * 180 - 90;
+                double lon = random.nextDouble() * 360 - 180;
+
+                double[] expected = sites.stream()
+                        .filter(site -> located(site) && "active".equals(site.getStatus()))
+                        .mapToDouble(site -> haversineKm(lat, lon, site))
+                        .sorted()
+                        .limit(k)
+                        .toArray();
+                List<NearbySiteDTO> found = service.findNearest(snapshot, lat, lon, k, "active", null);
+
+                assertThat(found).hasSize(expected.length);
+                for (int i = 0; i < expected.length; i++) {
+                    assertThat(found.get(i).getDistanceKm()).isCloseTo(expected[i], within(TOLERANCE_KM));
+                }
+            }
+        }
+    }
+
+    @Test
+    void sitesWithoutCoordinatesAreNeverReturned() {
+        List<Site> withMissing = new ArrayList<>(randomSites(50));
+        for (int i = 0; i < 50; i++) {
+            withMissing.add(site("missing-" + i, Double.NaN, Double.NaN, "active"));
+        }
+        SiteSpatialIndex mixed = SiteSpatialIndex.build(
+                new StudySnapshot("study", withMissing, List.of(), Map.of(), 1, 1, 1, null));
+
+        assertThat(mixed.nearest(0, 0, 1000, site -> true)).hasSize(50 - missingCount(withMissing.subList(0, 50)))
+                .allSatisfy(nearby -> assertThat(located(nearby.getSite())).isTrue());
+        assertThat(mixed.nearby(0, 0, 25_000, site -> true))
+                .allSatisfy(nearby -> assertThat(located(nearby.getSite())).isTrue());
+        assertThat(mixed.within(new BoundingBox(-180, -90, 180, 90), site -> true))
+                .allSatisfy(site -> assertThat(located(site)).isTrue());
+    }
+
+    @Test
+    void rejectsOutOfRangeArguments() {
+        SiteSpatialService service = new SiteSpatialService();
+
+        assertThatThrownBy(() -> service.findNearest(snapshot, 0, 0, 0, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.findNearest(snapshot, 0, 0, SiteSpatialService.MAX_NEAREST + 1, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.findNearest(snapshot, Double.NaN, 0, 5, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.findNearby(snapshot, 0, 0, Double.NaN, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private int boundaryCount(double lat, double lon, double radiusKm) {
+        return (int) sites.stream()
+                .filter(SiteSpatialIndexTest::located)
+                .filter(site -> Math.abs(haversineKm(lat, lon, site) - radiusKm) <= TOLERANCE_KM)
+                .count();
+    }
+
+    private static int missingCount(List<Site> sites) {
+        return (int) sites.stream().filter(site -> !located(site)).count();
+    }
+
+    private List<Site> randomSites(int n) {
+        List<Site> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double lat = i % 50 == 0 ? Double.NaN : random.nextDouble() * 180 - 90;
+            double lon = i % 50 == 0 ? Double.NaN : i % 9 == 0 ? (random.nextBoolean() ? 180 : -180) : random.nextDouble() * 360 - 180;
+            result.add(site("s" + i, lat, lon, i % 2 == 0 ? "active" : "inactive"));
+        }
+        return result;
+    }
+
+    private static Site site(String id, double latitude, double longitude, String status) {
+        Site site = new Site();
+        site.setId(id);
+        site.setNumber(id);
+        site.setStatus(status);
+        site.setLatitude(latitude);
+        site.setLongitude(longitude);
+        return site;
+    }
+
+    private static boolean located(Site site) {
+        return Double.isFinite(site.getLatitude()) && Double.isFinite(site.getLongitude());
+    }
+
+    private static double haversineKm(double lat, double lon, Site site) {
+        double phi1 = Math.toRadians(lat);
+        double phi2 = Math.toRadians(site.getLatitude());
+        double dPhi = phi2 - phi1;
+        double dLambda = Math.toRadians(site.getLongitude() - lon);
+        double a = Math.sin(dPhi / 2) * Math.sin(dPhi / 2)
+                + Math.cos(phi1) * Math.cos(phi2) * Math.sin(dLambda / 2) * Math.sin(dLambda / 2);
+        return 2 * SiteSpatialIndex.EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
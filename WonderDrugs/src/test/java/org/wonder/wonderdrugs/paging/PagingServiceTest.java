@@ -0,0 +1,182 @@
+package org.wonder.wonderdrugs.paging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.wonder.wonderdrugs.model.Site;
+import org.wonder.wonderdrugs.sync.StudySnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PagingServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PagingService pagingService = new PagingService(objectMapper);
+    private final List<Site> sites = sites(new Random(17), 250);
+    private final StudySnapshot snapshot = snapshot(sites, 1);
+
+    @Test
+    void visitsEverySiteExactlyOnceInEachSortOrder() throws IOException {
+        List<String> all = sites.stream().map(Site::getId).sorted().toList();
+        for (String sort : List.of("number", "-number", "status", "-status", "name", "-name",
+                "latitude", "-latitude", "daysToGreenlight", "-plannedGreenlightDate")) {
+            for (int limit : new int[]{1, 7, 100, 1000}) {
+                List<JsonNode> rows = pageThrough(snapshot, limit, sort);
+
+                List<String> ids = rows.stream().map(row -> row.get("id").asText()).toList();
+                assertThat(ids).as("sort %s, limit %d", sort, limit).doesNotHaveDuplicates();
+                assertThat(ids).as("sort %s, limit %d", sort, limit).containsExactlyInAnyOrderElementsOf(all);
+            }
+        }
+    }
+
+    @Test
+    void ordersTiesByIdAndPutsMissingKeysLast() throws IOException {
+        for (String sort : List.of("status", "-status", "name", "-name")) {
+            boolean descending = sort.startsWith("-");
+            String field = descending ? sort.substring(1) : sort;
+            List<JsonNode> rows = pageThrough(snapshot, 9, sort);
+
+            for (int i = 1; i < rows.size(); i++) {
+                JsonNode previous = rows.get(i - 1);
+                JsonNode current = rows.get(i);
+                if (!current.has(field)) {
+                    if (!previous.has(field)) {
+                        assertThat(previous.get("id").asText()).isLessThan(current.get("id").asText());
+                    }
+                    continue;
+                }
+                assertThat(previous.has(field)).as("missing %s sorts last", field).isTrue();
+                int compared = previous.get(field).asText().compareTo(current.get(field).asText());
+                if (compared == 0) {
+                    assertThat(previous.get("id").asText()).isLessThan(current.get("id").asText());
+                } else {
+                    assertThat(descending ? compared > 0 : compared < 0).as("%s at row %d", sort, i).isTrue();
+                }
+            }
+        }
+    }
+
+    @Test
+    void cursorSurvivesSnapshotChangesWithoutRepeatsOrSkips() throws IOException {
+        JsonNode first = page(snapshot, 50, "number", null);
+        String cursor = first.get("nextCursor").asText();
+        String lastNumber = first.get("items").get(49).get("number").asText();
+
+        // 新版本快照在游标之前插入一行并删除游标之后的一行
+        List<Site> changed = new ArrayList<>(sites);
+        changed.add(site("inserted", "0000", "active", "Inserted", 1.0));
+        Site removed = changed.stream()
+                .filter(site -> site.getNumber().compareTo(lastNumber) > 0)
+                .findFirst()
+                .orElseThrow();
+        changed.remove(removed);
+
+        List<String> seen = new ArrayList<>();
+        first.get("items").forEach(row -> seen.add(row.get("id").asText()));
+        String next = cursor;
+        while (next != null) {
+            JsonNode page = page(snapshot(changed, 2), 50, "number", next);
+            page.get("items").forEach(row -> seen.add(row.get("id").asText()));
+            next = page.has("nextCursor") ? page.get("nextCursor").asText() : null;
+        }
+
+        assertThat(seen).doesNotHaveDuplicates()
+                .doesNotContain("inserted", removed.getId())
+                .hasSize(sites.size() - 1);
+    }
+
+    @Test
+    void rejectsTamperedOrForeignCursors() throws IOException {
+        String valid = page(snapshot, 10, "latitude", null).get("nextCursor").asText();
+
+        for (String cursor : List.of(
+                "not base64!",
+                encode("not json"),
+                encode("[]"),
+                encode("null"),
+                encode("{\"s\":\"latitude\",\"k\":\"north\",\"i\":\"s1\"}"),
+                encode("{\"s\":\"latitude\",\"k\":1.5}"),
+                encode("{\"s\":\"latitude\",\"k\":1.5,\"i\":7}"),
+                encode("{\"s\":\"-latitude\",\"k\":1.5,\"i\":\"s1\"}"))) {
+            assertThatThrownBy(() -> page(snapshot, 10, "latitude", cursor))
+                    .as(cursor)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+        // 游标与排序绑定，换排序时不能沿用
+        assertThatThrownBy(() -> page(snapshot, 10, "-latitude", valid)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> page(snapshot, 10, "number", valid)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsUnknownFieldsAndLimits() {
+        assertThatThrownBy(() -> page(snapshot, 10, "address", null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> page(snapshot, 10, "unknown", null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageRequest.of(0, null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> PageRequest.of(PageRequest.MAX_LIMIT + 1, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<JsonNode> pageThrough(StudySnapshot snapshot, int limit, String sort) throws IOException {
+        List<JsonNode> rows = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = page(snapshot, limit, sort, cursor);
+            assertThat(page.get("total").asInt()).isEqualTo(snapshot.getSites().size());
+            page.get("items").forEach(rows::add);
+            cursor = page.has("nextCursor") ? page.get("nextCursor").asText() : null;
+            assertThat(rows.size()).isLessThanOrEqualTo(snapshot.getSites().size());
+        } while (cursor != null);
+        return rows;
+    }
+
+    private JsonNode page(StudySnapshot snapshot, int limit, String sort, String cursor) throws IOException {
+        byte[] body = pagingService.page(snapshot, SiteProjections.SITES,
+                PageRequest.of(limit, cursor, sort, "id,number,name,status,latitude"));
+        return objectMapper.readTree(body);
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static StudySnapshot snapshot(List<Site> sites, long version) {
+        return new StudySnapshot("study", sites, List.of(), Map.of(), version, version, version, null);
+    }
+
+    private static List<Site> sites(Random random, int n) {
+        String[] statuses = {"active", "closed", "planned", null};
+        List<Site> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // 少量取值制造大量并列的排序键；部分站点缺少名称或坐标
+            Site site = site("s" + i, String.format("%04d", random.nextInt(10_000)), statuses[random.nextInt(statuses.length)],
+                    i % 11 == 0 ? null : "Site " + random.nextInt(20),
+                    i % 13 == 0 ? Double.NaN : random.nextInt(5) * 10.0);
+            site.setDaysToGreenlight(i % 3 == 0 ? null : random.nextInt(4));
+            site.setPlannedGreenlightDate(i % 4 == 0 ? null : new Date(random.nextInt(3) * 86_400_000L));
+            result.add(site);
+        }
+        return result;
+    }
+
+    private static Site site(String id, String number, String status, String name, double latitude) {
+        Site site = new Site();
+        site.setId(id);
+        site.setNumber(number);
+        site.setStatus(status);
+        site.setName(name);
+        site.setLatitude(latitude);
+        site.setLongitude(latitude);
+        return site;
+    }
+}
@@ -0,0 +1,20 @@
+package org.wonder.wonderdrugs.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VaultServiceTest {
+
+    @Test
+    void normalizeQueryCollapsesWhitespaceOutsideLiterals() {
+        assertThat(VaultService.normalizeQuery("  SELECT id\n  FROM site__v   WHERE name__v = 'a  b' "))
+                .isEqualTo("SELECT id FROM site__v WHERE name__v = 'a  b'");
+    }
+
+    @Test
+    void normalizeQueryKeepsEscapedQuotesInsideLiterals() {
+        assertThat(VaultService.normalizeQuery("WHERE name__v = 'O\\'Brien  x'   AND id = '1'"))
+                .isEqualTo("WHERE name__v = 'O\\'Brien  x' AND id = '1'");
+    }
+}
@@ -0,0 +1,141 @@
+package org.wonder.wonderdrugs.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+import org.wonder.wonderdrugs.config.VaultConfig;
+import org.wonder.wonderdrugs.exception.VaultApiException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VaultSessionManagerTest {
+
+    private StubVault vault;
+    private VaultSessionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        vault = new StubVault();
+        manager = new VaultSessionManager(vault, new VaultConfig(), Duration.ofMinutes(20), Duration.ofHours(47),
+                Duration.ofMinutes(5), "", "", 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.unbind();
+    }
+
+    @Test
+    void loginBeyondPerUserLimitEndsOldestSession() {
+        String first = manager.login("alice", "secret");
+        String second = manager.login("alice", "secret");
+        String third = manager.login("alice", "secret");
+        String other = manager.login("bob", "secret");
+
+        assertThat(manager.isActive(first)).isFalse();
+        assertThat(manager.isActive(second)).isTrue();
+        assertThat(manager.isActive(third)).isTrue();
+        assertThat(manager.isActive(other)).isTrue();
+        assertThat(vault.ended).containsExactly(first);
+        assertThat(manager.getStats().getUserSessions()).isEqualTo(3);
+    }
+
+    @Test
+    void bindReplacesStaleBindingAndIgnoresUnknownSessions() {
+        String alice = manager.login("alice", "secret");
+        manager.bind(alice);
+        assertThat(manager.acquire()).isEqualTo(alice);
+        assertThat(manager.scope()).isEqualTo("user:alice");
+
+        manager.bind("unknown");
+        assertThat(manager.boundSession()).isNull();
+        assertThat(manager.scope()).isEqualTo("pool");
+    }
+
+    @Test
+    void callBoundCarriesCallerSessionAndRestoresBinding() throws Exception {
+        String alice = manager.login("alice", "secret");
+        String bob = manager.login("bob", "secret");
+        manager.bind(alice);
+        String captured = manager.boundSession();
+
+        String scope = CompletableFuture.supplyAsync(() -> manager.callBound(captured, manager::scope))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(scope).isEqualTo("user:alice");
+
+        manager.bind(bob);
+        assertThat(manager.callBound(null, manager::scope)).isEqualTo("pool");
+        assertThat(manager.boundSession()).isEqualTo(bob);
+    }
+
+    @Test
+    void invalidatedBoundSessionFailsInsteadOfBorrowingAnotherUsersSession() {
+        String alice = manager.login("alice", "secret");
+        manager.login("bob", "secret");
+        manager.bind(alice);
+
+        manager.invalidate(alice);
+
+        assertThat(manager.scope()).isNotEqualTo("user:alice").isNotEqualTo("pool");
+        assertThatThrownBy(manager::acquire)
+                .isInstanceOfSatisfying(VaultApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(401));
+    }
+
+    @Test
+    void expiredBoundSessionFailsInsteadOfBorrowingAnotherUsersSession() throws InterruptedException {
+        VaultSessionManager shortLived = new VaultSessionManager(vault, new VaultConfig(), Duration.ofMillis(50),
+                Duration.ofHours(47), Duration.ofMinutes(5), "", "", 2, 2);
+        String alice = shortLived.login("alice", "secret");
+        shortLived.bind(alice);
+        assertThat(shortLived.scope()).isEqualTo("user:alice");
+
+        Thread.sleep(100);
+        shortLived.login("bob", "secret");
+
+        assertThat(shortLived.scope()).isNotEqualTo("user:alice").isNotEqualTo("pool");
+        assertThatThrownBy(shortLived::acquire)
+                .isInstanceOfSatisfying(VaultApiException.class, e -> assertThat(e.getStatusCode()).isEqualTo(401));
+
+        shortLived.unbind();
+        assertThat(shortLived.scope()).isEqualTo("pool");
+        assertThat(shortLived.acquire()).isNotEqualTo(alice);
+    }
+
+    /**
+     * 用递增的会话ID应答 /auth，记录被结束的会话
+     */
+    private static final class StubVault extends RestTemplate {
+        private final AtomicInteger issued = new AtomicInteger();
+        private final List<String> ended = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> postForEntity(String url, Object request, Class<T> responseType, Object... uriVariables) {
+            String body = url.endsWith("/auth")
+                    ? "{\"responseStatus\":\"SUCCESS\",\"sessionId\":\"session-" + issued.incrementAndGet() + "\"}"
+                    : "{\"responseStatus\":\"SUCCESS\"}";
+            return (ResponseEntity<T>) ResponseEntity.ok(body);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity,
+                                              Class<T> responseType, Object... uriVariables) {
+            ended.add(requestEntity.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+            return (ResponseEntity<T>) ResponseEntity.ok("{\"responseStatus\":\"SUCCESS\"}");
+        }
+    }
+}